@@ -0,0 +1,33 @@
+package org.regpattern2vec;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is the main class of benchmarks.jar. It takes the usual JMH options and adds the GC profiler
+ * (-prof gc) when no profiler is given, so every run reports the allocation rate next to the throughput.
+ * The benchmarks are in the package of the plugin to reach its package-private hot paths, so they import the
+ * JMH annotations one by one: org.regpattern2vec.State would hide the @State of a wildcard import.
+ */
+
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
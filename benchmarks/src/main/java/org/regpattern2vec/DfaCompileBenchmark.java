@@ -0,0 +1,65 @@
+package org.regpattern2vec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is to benchmark the compilation of a Regular Expression into a CompiledDfa, for patterns over
+ * an increasing number of relationship types. A chain (T0)(T1)... has one state per type, an alternation
+ * ((T0)|(T1)|...)*(T0) has two states but every position follows every other one.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DfaCompileBenchmark {
+
+    @Param({"50", "200", "800"})
+    public int types;
+
+    @Param({"chain", "alternation"})
+    public String shape;
+
+    private List<String> typeList;
+    private String regex;
+
+    @Setup
+    public void setup() {
+        typeList = new ArrayList<>();
+        StringBuilder pattern = new StringBuilder(shape.equals("chain") ? "" : "(");
+        for (int i = 0; i < types; i++) {
+            typeList.add("T" + i);
+            if (shape.equals("chain")) {
+                pattern.append("(T").append(i).append(")");
+            } else {
+                pattern.append(i == 0 ? "" : "|").append("(T").append(i).append(")");
+            }
+        }
+        if (!shape.equals("chain")) {
+            pattern.append(")*(T0)");
+        }
+        regex = pattern.toString();
+    }
+
+    @Benchmark
+    public CompiledDfa compile() {
+        return new RegexToDfa(typeList, regex).compiledDfa;
+    }
+}
@@ -0,0 +1,64 @@
+package org.regpattern2vec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is to benchmark EmbeddingMatrix.addToRow, the in-place update of the shared rows in the training,
+ * in rows per second on random rows of a matrix larger than the CPU caches. The kernels are the ones the training
+ * uses, SIMD when the fork runs with the incubator module.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class EmbeddingMatrixBenchmark {
+
+    private static final int ROWS = 200_000;
+    private static final int UPDATES = 1024;
+
+    @Param({"64", "128", "256"})
+    public int dim;
+
+    private EmbeddingMatrix matrix;
+    private float[] delta;
+    private final int[] rows = new int[UPDATES];
+
+    @Setup
+    public void setup() {
+        matrix = new EmbeddingMatrix(ROWS, dim);
+        SplittableRandom random = new SplittableRandom(42L);
+        delta = new float[dim];
+        for (int i = 0; i < dim; i++) {
+            delta[i] = (random.nextFloat() - 0.5f) / dim;
+        }
+        for (int u = 0; u < UPDATES; u++) {
+            rows[u] = random.nextInt(ROWS);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(UPDATES)
+    public void addToRow() {
+        for (int row : rows) {
+            matrix.addToRow(row, 0.025f, delta);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.regpattern2vec;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is to benchmark the walks over the in-memory projection, on a synthetic graph whose degrees
+ * follow a power law: the endpoints of the edges are drawn with a density falling with the node id, so low ids
+ * are hubs and most nodes have a few relationships. The steps counter reports the walk steps per second.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RandomWalkBenchmark {
+
+    private static final List<String> TYPES = List.of("T0", "T1", "T2", "T3");
+
+    @Param({"100000", "1000000"})
+    public int nodes;
+
+    @Param({"10"})
+    public int averageDegree;
+
+    @Param({"((T0)|(T1)|(T2)|(T3))*", "((T0)(T1))*((T2)|(T3))*"})
+    public String pattern;
+
+    @Param({"80"})
+    public long walkLength;
+
+    private GraphProjection graph;
+    private CompiledDfa dfa;
+
+    @State(Scope.Thread)
+    public static class Walker {
+        final SplittableRandom random = new SplittableRandom(42L);
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Steps {
+        public long steps;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            steps = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7L);
+        int edges = (int) ((long) nodes * averageDegree / 2);
+        String[] ids = new String[nodes];
+        for (int n = 0; n < nodes; n++) {
+            ids[n] = "n" + n;
+        }
+        int[] sources = new int[edges];
+        int[] targets = new int[edges];
+        short[] types = new short[edges];
+        for (int e = 0; e < edges; e++) {
+            sources[e] = powerLawNode(random);
+            targets[e] = powerLawNode(random);
+            types[e] = (short) random.nextInt(TYPES.size());
+        }
+        graph = GraphProjection.fromEdges(ids, sources, targets, types);
+        dfa = new RegexToDfa(TYPES, pattern).compiledDfa;
+    }
+
+    /**
+     * @param random random generator of the setup
+     * @return node id with density proportional to id^(-2/3), i.e. a power-law degree distribution
+     */
+
+    private int powerLawNode(Random random) {
+        double u = random.nextDouble();
+        return Math.min(nodes - 1, (int) (nodes * u * u * u));
+    }
+
+    @Benchmark
+    public int[] walk(Walker walker, Steps steps) {
+        int[] walk = RegPattern2VecStream.RegularExpressionRandomWalks(graph, dfa, walker.random.nextInt(nodes), walkLength,
+                walker.random, Tracer.OFF);
+        steps.steps += walk.length - 1;
+        return walk;
+    }
+}
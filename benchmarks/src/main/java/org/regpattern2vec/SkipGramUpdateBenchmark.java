@@ -0,0 +1,107 @@
+package org.regpattern2vec;
+
+import org.neo4j.logging.NullLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is to benchmark HeterogenousSkipGram.updateParameters, the inner loop of the training, in
+ * (target, context) pairs per second for several embedding dimensions. The model is built with 0 epochs,
+ * so only its embedding matrices and negative sampling tables exist, and the pairs are random nodes.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class SkipGramUpdateBenchmark {
+
+    private static final int NODES = 100_000; // a multiple of the walk length of the corpus
+    private static final int PAIRS = 1024;
+    private static final int NEGATIVES = 3;
+    private static final int WINDOWS = PAIRS / (1 + NEGATIVES);
+
+    @Param({"64", "128", "256"})
+    public long dim;
+
+    private Path corpusFile;
+    private WalkCorpus corpus;
+    private HeterogenousSkipGram model;
+    private HeterogenousSkipGram.UpdateBuffers buffers;
+    private final int[] targets = new int[WINDOWS];
+    private final int[] outputs = new int[PAIRS];
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> nodeIds = new ArrayList<>(NODES);
+        for (int n = 0; n < NODES; n++) {
+            nodeIds.add("n" + n);
+        }
+
+        /// every node once in the corpus, so every node has a weight in the negative sampling table
+        corpusFile = Files.createTempFile("benchmark-walks", ".bin");
+        try (WalkCorpus.Writer writer = new WalkCorpus.Writer(corpusFile, nodeIds)) {
+            int[] walk = new int[100];
+            for (int n = 0; n < NODES; n += walk.length) {
+                for (int i = 0; i < walk.length; i++) {
+                    walk[i] = n + i;
+                }
+                writer.add(walk);
+            }
+        }
+        corpus = WalkCorpus.open(corpusFile);
+
+        model = new HeterogenousSkipGram(null, NullLog.getInstance(), dim, 1L, 1L, 0.025, 0.75, 0L, 0.0, 1L, 42L,
+                nodeIds, new int[NODES], List.of(":Node"), corpus);
+        buffers = new HeterogenousSkipGram.UpdateBuffers(Math.toIntExact(dim), NEGATIVES);
+
+        Random random = new Random(42L);
+        for (int w = 0; w < WINDOWS; w++) {
+            targets[w] = random.nextInt(NODES);
+        }
+        for (int i = 0; i < PAIRS; i++) {
+            outputs[i] = random.nextInt(NODES);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(corpusFile);
+    }
+
+    /**
+     * One positive pair and its negative pairs per update, like a context with negativeSampleSize = 3
+     */
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void updateParameters() {
+        for (int w = 0; w < WINDOWS; w++) {
+            int first = w * (1 + NEGATIVES);
+            System.arraycopy(outputs, first + 1, buffers.negatives, 0, NEGATIVES);
+            model.updateParameters(targets[w], outputs[first], NEGATIVES, 0.025f, buffers);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.regpattern2vec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is to compare the scalar and the SIMD kernels on the sequence of one Skip-Gram update as the training
+ * runs it: dot product of the target and output rows, sigmoid from the table, the axpy of the target gradient on the
+ * heap and the two in-place axpy of the output and the target rows of an off-heap matrix.
+ * The gradient is cleared on every invocation and the dot product is taken from rows that are never updated, so it
+ * does not drift into the saturated range of the sigmoid.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class VectorKernelsBenchmark {
+
+    @Param({"64", "128", "256"})
+    public int dim;
+
+    @Param({"scalar", "simd"})
+    public String kernel;
+
+    private VectorKernels kernels;
+    private float[] target;
+    private float[] context;
+    private float[] gradient;
+    private EmbeddingMatrix matrix;
+
+    @Setup
+    public void setup() {
+        kernels = kernel.equals("simd") ? new SimdKernels() : new ScalarKernels();
+        SplittableRandom random = new SplittableRandom(42L);
+        target = new float[dim];
+        context = new float[dim];
+        gradient = new float[dim];
+        for (int i = 0; i < dim; i++) {
+            target[i] = (random.nextFloat() - 0.5f) / dim;
+            context[i] = (random.nextFloat() - 0.5f) / dim;
+        }
+        /// row 0 is the target, row 1 the output the update is added to
+        matrix = new EmbeddingMatrix(2, dim);
+    }
+
+    @Benchmark
+    public float update() {
+        Arrays.fill(gradient, 0f);
+        float g = (1 - VectorKernels.sigmoid(kernels.dot(target, context, dim))) * 0.025f;
+        kernels.axpy(g, context, gradient, dim);
+        kernels.axpyInto(g, target, matrix.page(1), matrix.byteOffset(1), dim);
+        kernels.axpyInto(1f, gradient, matrix.page(0), matrix.byteOffset(0), dim);
+        return g;
+    }
+}
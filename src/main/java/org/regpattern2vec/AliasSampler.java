@@ -0,0 +1,98 @@
+package org.regpattern2vec;
+
+import java.util.SplittableRandom;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is a Vose alias table to draw from a discrete distribution in O(1).
+ * Used for the negative samples of one node type, weighted by the occurrences of the nodes
+ * in the walk corpus raised to the distortion exponent (0.75 in word2vec).
+ */
+
+public class AliasSampler {
+
+    private final int[] values;
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * This is a constructor, weights do not need to be normalized
+     * @param values values to draw, e.g. dense node ids
+     * @param weights weight of every value, all weights 0 falls back to a uniform distribution
+     */
+
+    public AliasSampler(int[] values, double[] weights) {
+        int n = values.length;
+        this.values = values;
+        this.probability = new double[n];
+        this.alias = new int[n];
+
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = total > 0 ? weights[i] * n / total : 1.0;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // what is left is 1 up to rounding errors
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1.0;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1.0;
+        }
+    }
+
+    /**
+     * @param exponent distortion exponent
+     * @param values values to draw
+     * @param counts occurrences of every value
+     * @return sampler weighted by counts^exponent
+     */
+
+    public static AliasSampler fromCounts(int[] values, long[] counts, double exponent) {
+        double[] weights = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            weights[i] = Math.pow(counts[i], exponent);
+        }
+        return new AliasSampler(values, weights);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param random random generator of the calling worker
+     * @return one value, no retries
+     */
+
+    public int sample(SplittableRandom random) {
+        int i = random.nextInt(values.length);
+        return random.nextDouble() < probability[i] ? values[i] : values[alias[i]];
+    }
+}
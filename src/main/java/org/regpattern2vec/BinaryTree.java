@@ -36,6 +36,16 @@ class BinaryTree {
 
     private List<String> TypeList = new ArrayList<>();
 
+    private final Tracer tracer;
+
+    BinaryTree() {
+        this(Tracer.OFF);
+    }
+
+    BinaryTree(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
     /// Generates tree using the regular expression and returns it's root
     /**
      *
@@ -67,7 +77,7 @@ class BinaryTree {
         //System.out.println("After complementReplacement: " + regular4);
 
         regular = flowerBracketReplacement(regular4);
-        System.out.println("After flowerBracketReplacement: " + regular);
+        tracer.debug("After flowerBracketReplacement: " + regular);
         
         // Cleaning stacks
         stackNode.clear();
@@ -166,10 +176,7 @@ class BinaryTree {
                         break;
 
                     default:
-                        System.out.println(">>" + stringAt);
-                        System.out.println("Unknown Symbol !");
-                        System.exit(1);
-                        break;
+                        throw new IllegalArgumentException("Unknown Symbol in Regular Expression: " + stringAt);
                 }
         }
     }
@@ -292,7 +299,7 @@ class BinaryTree {
                             if(isRelationshipType(temp)){
                                 newRegular = newRegular.replace(temp + '+', temp + '.' + temp + '*');}
                             else
-                                System.out.println("Incorrect Regular Expression ! Error at Plus to Start Conversion");
+                                tracer.debug("Incorrect Regular Expression ! Error at Plus to Start Conversion: " + temp);
                         }
                     }
                 }
@@ -409,19 +416,19 @@ class BinaryTree {
     }
     
     /* This method is here just to test buildTree() */
-    public void printInorder(Nodes node) {
+    public StringBuilder printInorder(Nodes node, StringBuilder out) {
         if (node == null) {
-            return;
+            return out;
         }
 
         /* first recur on left child */
-        printInorder(node.getLeft());
+        printInorder(node.getLeft(), out);
 
         /* then print the data of node */
-        System.out.print(node.getSymbol() + " ");
+        out.append(node.getSymbol()).append(' ');
 
         /* now recur on right child */
-        printInorder(node.getRight());
+        return printInorder(node.getRight(), out);
     }
     
     public int getNumberOfLeafs(){
@@ -0,0 +1,147 @@
+package org.regpattern2vec;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is a compact form of the DFA of a Regular Expression used by the walkers.
+ * Relationship types are mapped to dense int ids, states to ints, and the transitions are stored
+ * in a flat table indexed by state * numTypes + type, so a walk step is a single array load.
+ */
+
+public class CompiledDfa {
+
+    /// Sentinel for the dead state, i.e. no transition for a relationship type
+    public static final int DEAD = -1;
+
+    private final String[] typeNames;
+    private final Map<String, Integer> typeIds;
+    private final int numTypes;
+    private final int numStates;
+    private final int startState;
+    private final int[] table;
+    private final boolean[] accepting;
+    private final int[][] acceptedTypes;
+
+    /**
+     * This is a constructor, the states with an empty name are dead and are not compiled
+     * @param typeList List of Relation types of the graph
+     * @param dStates states of the DFA, named by transformStateNames
+     * @param startState first state of the DFA
+     */
+
+    public CompiledDfa(List<String> typeList, List<State> dStates, State startState) {
+        this.typeNames = typeList.toArray(new String[0]);
+        this.typeIds = new HashMap<>();
+        for (int t = 0; t < typeNames.length; t++) {
+            typeIds.put(typeNames[t], t);
+        }
+        this.numTypes = typeNames.length;
+
+        int states = 0;
+        for (State state : dStates) {
+            if (!state.getName().isEmpty()) {
+                states++;
+            }
+        }
+        this.numStates = states;
+        this.table = new int[numStates * numTypes];
+        this.accepting = new boolean[numStates];
+        Arrays.fill(table, DEAD);
+
+        for (State state : dStates) {
+            if (state.getName().isEmpty()) {
+                continue;
+            }
+            int from = stateIndex(state);
+            accepting[from] = state.getIsAcceptable();
+            for (Map.Entry<String, State> entry : state.getAllMoves().entrySet()) {
+                Integer type = typeIds.get(entry.getKey());
+                if (type == null || entry.getValue().getName().isEmpty()) {
+                    continue; // "#" end marker or a move to the dead state
+                }
+                table[from * numTypes + type] = stateIndex(entry.getValue());
+            }
+        }
+
+        /// relationship types with a live transition, per state
+        this.acceptedTypes = new int[numStates][];
+        for (int state = 0; state < numStates; state++) {
+            int count = 0;
+            for (int type = 0; type < numTypes; type++) {
+                if (table[state * numTypes + type] != DEAD) {
+                    count++;
+                }
+            }
+            acceptedTypes[state] = new int[count];
+            count = 0;
+            for (int type = 0; type < numTypes; type++) {
+                if (table[state * numTypes + type] != DEAD) {
+                    acceptedTypes[state][count++] = type;
+                }
+            }
+        }
+        this.startState = startState == null || startState.getName().isEmpty() ? DEAD : stateIndex(startState);
+    }
+
+    private static int stateIndex(State state) {
+        return state.getTransformedName() - 1;
+    }
+
+    /**
+     * Next state of the DFA
+     * @param state current state
+     * @param type id of the relationship type, may be DEAD for unknown types
+     * @return next state or DEAD
+     */
+
+    public int next(int state, int type) {
+        if (state == DEAD || type == DEAD) {
+            return DEAD;
+        }
+        return table[state * numTypes + type];
+    }
+
+    /**
+     * Relationship types the DFA accepts in a state, so walkers only expand those
+     * @param state current state
+     * @return ids of the accepted types, empty for the dead state
+     */
+
+    public int[] acceptedTypes(int state) {
+        return state == DEAD ? new int[0] : acceptedTypes[state];
+    }
+
+    /**
+     * @param typeName name of a relationship type
+     * @return dense id of the type or DEAD if the type is unknown
+     */
+
+    public int typeId(String typeName) {
+        Integer type = typeIds.get(typeName);
+        return type == null ? DEAD : type;
+    }
+
+    public String typeName(int type) {
+        return typeNames[type];
+    }
+
+    public int startState() {
+        return startState;
+    }
+
+    public boolean isAccepting(int state) {
+        return state != DEAD && accepting[state];
+    }
+
+    public int numTypes() {
+        return numTypes;
+    }
+
+    public int numStates() {
+        return numStates;
+    }
+}
@@ -0,0 +1,92 @@
+package org.regpattern2vec;
+
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is a bounded LRU cache of compiled DFAs, shared by all procedure calls of the database.
+ * The key is the regular expression together with the relationship type catalog, i.e. the sorted names of the
+ * relationship types in use. A new type or the last relationship of a type gone changes the catalog, so a cached
+ * DFA is never used with types it was not compiled for. CompiledDfa is immutable, concurrent calls share it.
+ */
+
+public class DfaCache {
+
+    static final int DEFAULT_CAPACITY = 64;
+
+    private final Map<String, CompiledDfa> cache;
+    private long hits;
+    private long misses;
+
+    public DfaCache(int capacity) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledDfa> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * This method is to read the relationship type catalog from the token store, without scanning relationships
+     * @param tx an active transaction
+     * @return sorted names of the relationship types in use
+     */
+
+    public static List<String> relationshipTypes(Transaction tx) {
+        List<String> types = new ArrayList<>();
+        for (RelationshipType type : tx.getAllRelationshipTypesInUse()) {
+            types.add(type.name());
+        }
+        Collections.sort(types);
+        return types;
+    }
+
+    /**
+     * This method is to get the DFA of a regular expression, compiled on the first use
+     * Two calls missing at the same time may both compile, the DFAs are equal so either one is kept
+     * @param regex Regular Expression
+     * @param typeList sorted names of the relationship types in use
+     * @param tracer tracing of the procedure call
+     * @return compiled DFA, null if the regex is incorrect (not cached)
+     */
+
+    public CompiledDfa get(String regex, List<String> typeList, Tracer tracer) {
+        String key = regex + '\u0000' + String.join("\u0000", typeList);
+        synchronized (this) {
+            CompiledDfa dfa = cache.get(key);
+            if (dfa != null) {
+                hits++;
+                tracer.debug("DFA cache hit for " + regex);
+                return dfa;
+            }
+            misses++;
+        }
+        CompiledDfa dfa = new RegexToDfa(typeList, regex, tracer).compiledDfa;
+        if (dfa != null) {
+            synchronized (this) {
+                cache.put(key, dfa);
+            }
+        }
+        return dfa;
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+}
@@ -0,0 +1,145 @@
+package org.regpattern2vec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is a rows x dim float matrix stored off-heap, indexed by dense node id.
+ * The rows are kept in direct ByteBuffers of at most 1 GB (a ByteBuffer is int indexed), so the vectors
+ * are outside the Java heap and GC pauses do not grow with the graph. Row r is in page(r) at byteOffset(r).
+ */
+
+public class EmbeddingMatrix {
+
+    private static final int MAX_PAGE_BYTES = 1 << 30;
+
+    private final int rows;
+    private final int dim;
+    private final int rowsPerPage;
+    private final ByteBuffer[] pages;
+    /// float views of the pages for the bulk row copies of the training
+    private final FloatBuffer[] floatPages;
+
+    /**
+     * This is a constructor, all entries start at 0
+     * @param rows number of rows i.e. nodes
+     * @param dim embedding dimension
+     */
+
+    public EmbeddingMatrix(int rows, int dim) {
+        this.rows = rows;
+        this.dim = dim;
+        this.rowsPerPage = Math.max(1, MAX_PAGE_BYTES / (4 * Math.max(1, dim)));
+        int pageCount = Math.max(1, (rows + rowsPerPage - 1) / rowsPerPage);
+        this.pages = new ByteBuffer[pageCount];
+        this.floatPages = new FloatBuffer[pageCount];
+        for (int p = 0; p < pageCount; p++) {
+            int pageRows = Math.min(rowsPerPage, rows - p * rowsPerPage);
+            pages[p] = ByteBuffer.allocateDirect(Math.max(0, pageRows) * dim * 4).order(ByteOrder.nativeOrder());
+            floatPages[p] = pages[p].asFloatBuffer();
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    /**
+     * @return off-heap bytes of the matrix
+     */
+
+    public long bytes() {
+        return 4L * rows * dim;
+    }
+
+    /**
+     * @param row dense node id
+     * @return buffer holding the row
+     */
+
+    public ByteBuffer page(int row) {
+        return pages[row / rowsPerPage];
+    }
+
+    /**
+     * @param row dense node id
+     * @return byte offset of the first coordinate of the row in its page
+     */
+
+    public int byteOffset(int row) {
+        return (row % rowsPerPage) * dim * 4;
+    }
+
+    public float get(int row, int i) {
+        return page(row).getFloat(byteOffset(row) + 4 * i);
+    }
+
+    public void set(int row, int i, float value) {
+        page(row).putFloat(byteOffset(row) + 4 * i, value);
+    }
+
+    /**
+     * @param row dense node id
+     * @return copy of the row on the heap
+     */
+
+    public float[] getRow(int row) {
+        ByteBuffer page = page(row);
+        int base = byteOffset(row);
+        float[] vec = new float[dim];
+        for (int i = 0; i < dim; i++) {
+            vec[i] = page.getFloat(base + 4 * i);
+        }
+        return vec;
+    }
+
+    /**
+     * This method is to copy a row into a heap array, one bulk copy with absolute indexes (thread-safe)
+     * @param row dense node id
+     * @param out array of at least dim floats
+     */
+
+    public void readRow(int row, float[] out) {
+        floatPages[row / rowsPerPage].get((row % rowsPerPage) * dim, out, 0, dim);
+    }
+
+    /**
+     * This method is to add a scaled vector to a row in place, row = row + alpha * x, like the updates of word2vec
+     * Every lane is read and written on its own by the kernels, so concurrent workers (Hogwild) only lose the updates
+     * that hit the same coordinates at the same time, never the other coordinates of the row
+     * @param row dense node id
+     * @param alpha scale of x
+     * @param x array of at least dim floats
+     */
+
+    public void addToRow(int row, float alpha, float[] x) {
+        VectorKernels.INSTANCE.axpyInto(alpha, x, page(row), byteOffset(row), dim);
+    }
+
+    /**
+     * This method is to put a row at the position of a buffer, in the byte order of the buffer
+     * Rows are copied in bulk when the buffer has the native order, without going through the heap
+     * @param row dense node id
+     * @param out buffer with at least 4 * dim bytes remaining
+     */
+
+    public void copyRow(int row, ByteBuffer out) {
+        ByteBuffer page = page(row);
+        int base = byteOffset(row);
+        if (out.order() == page.order()) {
+            ByteBuffer slice = page.duplicate();
+            slice.limit(base + 4 * dim).position(base);
+            out.put(slice);
+            return;
+        }
+        for (int i = 0; i < dim; i++) {
+            out.putFloat(page.getFloat(base + 4 * i));
+        }
+    }
+}
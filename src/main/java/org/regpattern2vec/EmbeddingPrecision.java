@@ -0,0 +1,177 @@
+package org.regpattern2vec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is the precision embeddings are exported with.
+ * FLOAT32 is the training precision, FLOAT16 halves the size (relative error below 2^-11),
+ * INT8 quarters it by storing every vector as a float scale followed by one signed byte per coordinate
+ * (absolute error below scale / 2, with scale = max |x| / 127).
+ */
+
+public enum EmbeddingPrecision {
+
+    FLOAT32,
+    FLOAT16,
+    INT8;
+
+    /**
+     * @param value name of the precision, case-insensitive
+     * @return the precision
+     */
+
+    public static EmbeddingPrecision parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown export precision: " + value + ", expected float32, float16 or int8");
+        }
+    }
+
+    /**
+     * @param dim embedding dimension
+     * @return bytes of one encoded vector
+     */
+
+    public int bytesPerVector(int dim) {
+        switch (this) {
+            case FLOAT16:
+                return 2 * dim;
+            case INT8:
+                return 4 + dim;
+            default:
+                return 4 * dim;
+        }
+    }
+
+    /**
+     * This method is to encode a vector at the position of the buffer
+     * @param vec embedding of a node
+     * @param out buffer with at least bytesPerVector remaining
+     */
+
+    public void encode(float[] vec, ByteBuffer out) {
+        switch (this) {
+            case FLOAT16:
+                for (float value : vec) {
+                    out.putShort(toHalf(value));
+                }
+                break;
+            case INT8:
+                float scale = scale(vec);
+                out.putFloat(scale);
+                for (float value : vec) {
+                    out.put(scale == 0f ? 0 : (byte) Math.max(-127, Math.min(127, Math.round(value / scale))));
+                }
+                break;
+            default:
+                for (float value : vec) {
+                    out.putFloat(value);
+                }
+        }
+    }
+
+    /**
+     * This method is to decode a vector at the position of the buffer
+     * @param in buffer positioned at an encoded vector
+     * @param vec filled with the decoded coordinates
+     */
+
+    public void decode(ByteBuffer in, float[] vec) {
+        switch (this) {
+            case FLOAT16:
+                for (int i = 0; i < vec.length; i++) {
+                    vec[i] = fromHalf(in.getShort());
+                }
+                break;
+            case INT8:
+                float scale = in.getFloat();
+                for (int i = 0; i < vec.length; i++) {
+                    vec[i] = in.get() * scale;
+                }
+                break;
+            default:
+                for (int i = 0; i < vec.length; i++) {
+                    vec[i] = in.getFloat();
+                }
+        }
+    }
+
+    private static float scale(float[] vec) {
+        float max = 0f;
+        for (float value : vec) {
+            max = Math.max(max, Math.abs(value));
+        }
+        return max / 127f;
+    }
+
+    /**
+     * IEEE 754 binary16 conversion with round to nearest even, Float.floatToFloat16 is not available on Java 17
+     * @param value float value
+     * @return half precision bits
+     */
+
+    static short toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent == 0xFF) { // NaN and infinity
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        int halfExponent = exponent - 127 + 15;
+        if (halfExponent >= 0x1F) { // overflow
+            return (short) (sign | 0x7C00);
+        }
+        if (halfExponent <= 0) { // subnormal or zero
+            if (halfExponent < -10) {
+                return (short) sign;
+            }
+            mantissa |= 0x800000;
+            int shift = 14 - halfExponent;
+            int half = mantissa >> shift;
+            int rest = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (rest > halfway || (rest == halfway && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = (halfExponent << 10) | (mantissa >> 13);
+        int rest = mantissa & 0x1FFF;
+        if (rest > 0x1000 || (rest == 0x1000 && (half & 1) != 0)) {
+            half++; // may carry into the exponent, which is the correct rounding
+        }
+        return (short) (sign | half);
+    }
+
+    /**
+     * @param half half precision bits
+     * @return float value
+     */
+
+    static float fromHalf(short half) {
+        int sign = (half & 0x8000) << 16;
+        int exponent = (half >>> 10) & 0x1F;
+        int mantissa = half & 0x3FF;
+
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        if (exponent == 0) {
+            if (mantissa == 0) {
+                return Float.intBitsToFloat(sign);
+            }
+            // subnormal: normalize the mantissa
+            exponent = 1;
+            while ((mantissa & 0x400) == 0) {
+                mantissa <<= 1;
+                exponent--;
+            }
+            mantissa &= 0x3FF;
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+}
@@ -0,0 +1,263 @@
+package org.regpattern2vec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is the file format the embeddings are exported with.
+ * TSV is the text format (element id, tab, space-separated coordinates), WORD2VEC is the binary format of
+ * the original word2vec tool, NPY is a NumPy matrix and RAW is a bare little-endian matrix.
+ * TSV and WORD2VEC are float32 only, NPY and RAW store the rows with the export precision: a float32 or float16
+ * matrix, or for int8 one record per row of a float scale followed by the signed bytes.
+ * NPY and RAW write the element ids of the rows to a sidecar file (.ids, one per line), so the matrix can be
+ * memory-mapped directly, e.g. numpy.load(path, mmap_mode="r"). NONE writes no file, the default of the write
+ * procedure whose embeddings are already stored in the graph.
+ * Every format is written through one FileChannel with a large direct buffer.
+ */
+
+public enum ExportFormat {
+
+    TSV,
+    WORD2VEC,
+    NPY,
+    RAW,
+    NONE;
+
+    private static final int BUFFER_BYTES = 8 << 20;
+
+    /**
+     * @param value name of the format, case-insensitive
+     * @return the format
+     */
+
+    public static ExportFormat parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown export format: " + value + ", expected tsv, word2vec, npy, raw or none");
+        }
+    }
+
+    /**
+     * This method is to reject a precision the format cannot store
+     * @param precision export precision
+     */
+
+    public void checkPrecision(EmbeddingPrecision precision) {
+        if (precision != EmbeddingPrecision.FLOAT32 && (this == TSV || this == WORD2VEC)) {
+            throw new IllegalArgumentException("Export precision " + precision.name().toLowerCase()
+                    + " is only supported by the npy and raw export formats, " + name().toLowerCase() + " is float32");
+        }
+    }
+
+    /**
+     * @param precision export precision
+     * @return extension of the embedding file
+     */
+
+    public String extension(EmbeddingPrecision precision) {
+        switch (this) {
+            case WORD2VEC:
+                return ".w2v.bin";
+            case NPY:
+                return ".npy";
+            case RAW:
+                switch (precision) {
+                    case FLOAT16:
+                        return ".f16";
+                    case INT8:
+                        return ".i8";
+                    default:
+                        return ".f32";
+                }
+            default:
+                return ".tsv";
+        }
+    }
+
+    /**
+     * This method is to write the embeddings
+     * @param base path of the files without extension, e.g. rawFiles/embeddings
+     * @param nodeIds element ids by dense id
+     * @param matrix embeddings by dense id
+     * @param precision precision of the rows, float32 for TSV and WORD2VEC
+     * @return path of the embedding file, null for NONE
+     * @throws IOException
+     */
+
+    public Path write(String base, List<String> nodeIds, EmbeddingMatrix matrix, EmbeddingPrecision precision)
+            throws IOException {
+        checkPrecision(precision);
+        if (this == NONE) {
+            return null;
+        }
+        Path file = Path.of(base + extension(precision));
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        int dim = matrix.dim();
+        try (Output out = new Output(file, 4 * dim + 64)) {
+            switch (this) {
+                case TSV:
+                    StringBuilder line = new StringBuilder();
+                    for (int node = 0; node < nodeIds.size(); node++) {
+                        line.setLength(0);
+                        line.append(nodeIds.get(node)).append('\t');
+                        for (int i = 0; i < dim; i++) {
+                            if (i > 0) {
+                                line.append(' ');
+                            }
+                            line.append(matrix.get(node, i));
+                        }
+                        out.put(line.append('\n'));
+                    }
+                    break;
+                case WORD2VEC:
+                    /// "<count> <dim>\n", then per node "<id> " followed by dim little-endian floats and "\n"
+                    out.put(nodeIds.size() + " " + dim + "\n");
+                    for (int node = 0; node < nodeIds.size(); node++) {
+                        out.put(nodeIds.get(node) + " ");
+                        matrix.copyRow(node, out.reserve(4 * dim));
+                        out.reserve(1).put((byte) '\n');
+                    }
+                    break;
+                case NPY:
+                    byte[] header = npyHeader(nodeIds.size(), dim, precision);
+                    out.reserve(header.length).put(header);
+                    writeRows(out, matrix, nodeIds.size(), precision);
+                    break;
+                case RAW:
+                    writeRows(out, matrix, nodeIds.size(), precision);
+                    break;
+            }
+        }
+        if (this == NPY || this == RAW) {
+            try (Output ids = new Output(Path.of(base + ".ids"), 64)) {
+                for (String nodeId : nodeIds) {
+                    ids.put(nodeId + "\n");
+                }
+            }
+        }
+        return file;
+    }
+
+    /**
+     * This method is to write the rows of a matrix, float32 rows are copied without decoding
+     * @param out output of the embedding file
+     * @param matrix embeddings by dense id
+     * @param rows number of rows
+     * @param precision export precision
+     * @throws IOException
+     */
+
+    private static void writeRows(Output out, EmbeddingMatrix matrix, int rows, EmbeddingPrecision precision) throws IOException {
+        int dim = matrix.dim();
+        if (precision == EmbeddingPrecision.FLOAT32) {
+            for (int node = 0; node < rows; node++) {
+                matrix.copyRow(node, out.reserve(4 * dim));
+            }
+            return;
+        }
+        float[] vec = new float[dim];
+        for (int node = 0; node < rows; node++) {
+            matrix.readRow(node, vec);
+            precision.encode(vec, out.reserve(precision.bytesPerVector(dim)));
+        }
+    }
+
+    /**
+     * This method is to build the header of a version 1.0 .npy file of a C-order matrix
+     * float32 and float16 are a rows x dim matrix, int8 is a vector of rows records (scale, values)
+     * The header is padded with spaces so that the data starts at a multiple of 64 bytes
+     * @param rows number of rows
+     * @param dim number of columns
+     * @param precision export precision
+     * @return header bytes
+     */
+
+    static byte[] npyHeader(int rows, int dim, EmbeddingPrecision precision) {
+        StringBuilder dict = new StringBuilder("{'descr': ");
+        switch (precision) {
+            case FLOAT16:
+                dict.append("'<f2', 'fortran_order': False, 'shape': (").append(rows).append(", ").append(dim);
+                break;
+            case INT8:
+                dict.append("[('scale', '<f4'), ('values', '|i1', (").append(dim)
+                        .append(",))], 'fortran_order': False, 'shape': (").append(rows).append(',');
+                break;
+            default:
+                dict.append("'<f4', 'fortran_order': False, 'shape': (").append(rows).append(", ").append(dim);
+        }
+        dict.append("), }");
+        int preamble = 10; // magic, version and header length
+        while ((preamble + dict.length() + 1) % 64 != 0) {
+            dict.append(' ');
+        }
+        dict.append('\n');
+        byte[] text = dict.toString().getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer header = ByteBuffer.allocate(preamble + text.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.put((byte) 0x93).put("NUMPY".getBytes(StandardCharsets.US_ASCII)).put((byte) 1).put((byte) 0);
+        header.putShort((short) text.length).put(text);
+        return header.array();
+    }
+
+    /**
+     * This code is a channel with a direct little-endian buffer, flushed whenever the next record may not fit
+     */
+
+    private static class Output implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        Output(Path file, int maxRecordBytes) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_BYTES, maxRecordBytes)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /// returns the buffer with at least the given bytes remaining
+        ByteBuffer reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+
+        void put(CharSequence text) throws IOException {
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            int offset = 0;
+            while (offset < bytes.length) {
+                int length = Math.min(bytes.length - offset, reserve(1).remaining());
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.regpattern2vec;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.Node;
+import org.neo4j.logging.Log;
+
+import java.util.*;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is an in-memory compressed sparse row (CSR) copy of the graph used for walk generation.
+ * Nodes get dense int ids, the neighbours of node n are targets[offsets[n] .. offsets[n+1]) and
+ * relTypes holds the DFA type id of every entry. Entries of a node are grouped by type in ascending order,
+ * so the range of one type is found with a binary search.
+ */
+
+public class GraphProjection {
+
+    /// String of an element id (4:<database uuid>:<id>, about 45 characters) with its byte array
+    private static final long ELEMENT_ID_BYTES = 96;
+    /// HashMap entry, boxed Integer and table slots of an element id in the dense id index, held while loading
+    private static final long DENSE_ID_BYTES = 64;
+
+    private final String[] elementIds;
+    private final int[] offsets;
+    private final int[] targets;
+    private final short[] relTypes;
+
+    private GraphProjection(String[] elementIds, int[] offsets, int[] targets, short[] relTypes) {
+        this.elementIds = elementIds;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.relTypes = relTypes;
+    }
+
+    /**
+     * This method is to load the graph into a projection
+     * Only relationship types the DFA can follow in some state are loaded, in both directions
+     *
+     * @param tx an active transaction to work with database
+     * @param dfa compiled DFA of Regular Expression
+     * @param nodeTypes filled with the type id of every node, in dense id order
+     * @param log To log the memory use of the projection
+     * @return projection of the graph
+     */
+
+    public static GraphProjection load(Transaction tx, CompiledDfa dfa, NodeTypeIndex nodeTypes, Log log) {
+        long startTime = System.nanoTime();
+
+        /// relationship types the walkers can ever follow, in ascending id order
+        boolean[] used = new boolean[dfa.numTypes()];
+        for (int state = 0; state < dfa.numStates(); state++) {
+            for (int type : dfa.acceptedTypes(state)) {
+                used[type] = true;
+            }
+        }
+        List<Integer> usedTypeIds = new ArrayList<>();
+        for (int type = 0; type < used.length; type++) {
+            if (used[type]) {
+                usedTypeIds.add(type);
+            }
+        }
+        RelationshipType[] usedTypes = new RelationshipType[usedTypeIds.size()];
+        for (int k = 0; k < usedTypes.length; k++) {
+            usedTypes[k] = RelationshipType.withName(dfa.typeName(usedTypeIds.get(k)));
+        }
+
+        /// first pass: dense node ids, node types and the number of entries, so the memory use is known up front
+        /// Only the element ids are kept, the nodes are looked up again by the second pass
+        List<String> nodeIds = new ArrayList<>();
+        Map<String, Integer> denseIds = new HashMap<>();
+        long entries = 0;
+        for (Node node : tx.getAllNodes()) {
+            String elementId = node.getElementId();
+            denseIds.put(elementId, nodeIds.size());
+            nodeIds.add(elementId);
+            nodeTypes.add(node);
+            for (RelationshipType type : usedTypes) {
+                entries += node.getDegree(type, Direction.BOTH);
+            }
+        }
+        if (entries > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Graph is too large for the projection (" + entries
+                    + " relationship entries), run with projectGraph = false");
+        }
+        int nodeCount = nodeIds.size();
+        log.info(String.format("Projecting %d nodes and %d relationship entries of %d types, estimated memory %d MB",
+                nodeCount, entries, usedTypes.length, estimateMemory(nodeCount, entries) / (1024 * 1024)));
+        String[] elementIds = nodeIds.toArray(new String[0]);
+        nodeIds = null;
+
+        /// second pass: adjacency grouped by type
+        /// Nodes created after the first pass have no dense id, relationships to them are left out
+        int[] offsets = new int[nodeCount + 1];
+        int[] targets = new int[(int) entries];
+        short[] relTypes = new short[(int) entries];
+        int size = 0;
+        for (int n = 0; n < nodeCount; n++) {
+            Node node = tx.getNodeByElementId(elementIds[n]);
+            for (int k = 0; k < usedTypes.length; k++) {
+                try (ResourceIterable<Relationship> relationships = node.getRelationships(Direction.BOTH, usedTypes[k])) {
+                    for (Relationship rel : relationships) {
+                        Integer target = denseIds.get(rel.getOtherNode(node).getElementId());
+                        if (target == null) {
+                            continue;
+                        }
+                        if (size == targets.length) {
+                            targets = Arrays.copyOf(targets, size + 1024);
+                            relTypes = Arrays.copyOf(relTypes, size + 1024);
+                        }
+                        targets[size] = target;
+                        relTypes[size] = (short) (int) usedTypeIds.get(k);
+                        size++;
+                    }
+                }
+            }
+            offsets[n + 1] = size;
+        }
+        if (size != targets.length) {
+            targets = Arrays.copyOf(targets, size);
+            relTypes = Arrays.copyOf(relTypes, size);
+        }
+
+        log.info(String.format("Projected graph in %d ms", (System.nanoTime() - startTime) / 1_000_000));
+        return new GraphProjection(elementIds, offsets, targets, relTypes);
+    }
+
+    /**
+     * This method is to build a projection from an edge list, e.g. a synthetic graph of a benchmark
+     * Every edge is stored at both of its nodes, like a relationship read with Direction.BOTH
+     *
+     * @param elementIds element id of every dense node id
+     * @param sources dense id of the first node of every edge
+     * @param targets dense id of the second node of every edge
+     * @param types DFA type id of every edge
+     * @return projection of the edges
+     */
+
+    public static GraphProjection fromEdges(String[] elementIds, int[] sources, int[] targets, short[] types) {
+        if (sources.length != targets.length || sources.length != types.length) {
+            throw new IllegalArgumentException("Sources, targets and types of the edges differ in length");
+        }
+        int nodeCount = elementIds.length;
+        long entries = 2L * sources.length;
+        if (entries > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Graph is too large for the projection (" + entries + " relationship entries)");
+        }
+
+        /// edges in ascending type order, so filling the nodes in this order groups their entries by type
+        int typeCount = 0;
+        for (short type : types) {
+            typeCount = Math.max(typeCount, (type & 0xFFFF) + 1);
+        }
+        int[] typeStart = new int[typeCount + 1];
+        for (short type : types) {
+            typeStart[(type & 0xFFFF) + 1]++;
+        }
+        for (int t = 0; t < typeCount; t++) {
+            typeStart[t + 1] += typeStart[t];
+        }
+        int[] byType = new int[sources.length];
+        for (int e = 0; e < sources.length; e++) {
+            byType[typeStart[types[e] & 0xFFFF]++] = e;
+        }
+
+        int[] offsets = new int[nodeCount + 1];
+        for (int e = 0; e < sources.length; e++) {
+            offsets[sources[e] + 1]++;
+            offsets[targets[e] + 1]++;
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            offsets[n + 1] += offsets[n];
+        }
+        int[] fill = Arrays.copyOf(offsets, nodeCount);
+        int[] adjacency = new int[(int) entries];
+        short[] relTypes = new short[(int) entries];
+        for (int e : byType) {
+            int entry = fill[sources[e]]++;
+            adjacency[entry] = targets[e];
+            relTypes[entry] = types[e];
+            entry = fill[targets[e]]++;
+            adjacency[entry] = sources[e];
+            relTypes[entry] = types[e];
+        }
+        return new GraphProjection(elementIds, offsets, adjacency, relTypes);
+    }
+
+    /**
+     * This method is to estimate the peak memory of loading a projection
+     * The arrays are exact, the element id strings and the dense id index that is held while loading are
+     * counted with their object overhead
+     * @param nodeCount number of nodes
+     * @param entries number of relationship entries, each relationship is stored at both of its nodes
+     * @return estimated size of the projection in bytes
+     */
+
+    public static long estimateMemory(long nodeCount, long entries) {
+        long arrays = 4L * (nodeCount + 1) + 4L * entries + 2L * entries + 4L * nodeCount;
+        long ids = (ELEMENT_ID_BYTES + DENSE_ID_BYTES) * nodeCount;
+        return arrays + ids;
+    }
+
+    public int nodeCount() {
+        return elementIds.length;
+    }
+
+    public String elementId(int node) {
+        return elementIds[node];
+    }
+
+    public int target(int entry) {
+        return targets[entry];
+    }
+
+    /**
+     * @param node dense node id
+     * @param type DFA type id
+     * @return first entry of the node with a type not below the given type
+     */
+
+    public int lowerBound(int node, int type) {
+        int lo = offsets[node];
+        int hi = offsets[node + 1];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if ((relTypes[mid] & 0xFFFF) < type) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -4,11 +4,13 @@ import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.Node;
 import org.neo4j.logging.Log;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Sainath_Talakanti
@@ -22,269 +24,426 @@ public class HeterogenousSkipGram {
     private Long windowSize;
     private Long negativeSampleSize;
     private double learningRate;
+    private double negativeSamplingExponent;
     private Long epochs;
-    private List<Node> walk;
-    private List<Node> nodeList;
+    private double earlyStopThreshold;
+    private int concurrency;
+    private WalkCorpus walks;
+    private List<String> nodeIds;
 
     // The embeddings: one for input (target) and one for output (context) per node.
-// You could use a Map<Node, double[]> if your nodes are objects.
-    public Map<String, double[]> inputEmbeddings;
-    private Map<String, double[]> outputEmbeddings;
+    // Off-heap float matrices indexed by the dense node id, the hot loop touches no maps.
+    public EmbeddingMatrix inputEmbeddings;
+    private EmbeddingMatrix outputEmbeddings;
 
-    // A map from node type to list of node IDs of that type (for type-specific negative sampling)
-    private Map<String, List<String>> nodesByType;
+    // Dense node IDs per node type (for type-specific negative sampling), indexed by type id
+    private int[][] nodesByType;
 
-    // Reuse one Random instance for efficiency.
-    private final Random random = new Random();
+    // Type id of every dense node ID
+    private int[] nodeTypes;
+    private List<String> typeNames;
+
+    // Alias table per node type, weighted by corpus occurrences^negativeSamplingExponent
+    private AliasSampler[] negativeSamplers;
+
+    // Seeded generator of the initialization, every worker gets its own split of it.
+    private final SplittableRandom random;
+
+    // Dot product and axpy of the updates, SIMD if the Vector API is available
+    private static final VectorKernels kernels = VectorKernels.INSTANCE;
+
+    // The learning rate decays linearly to this fraction of learningRate over the planned pairs, as in word2vec
+    private static final double MIN_LEARNING_RATE_FRACTION = 1e-4;
+    // Pairs a worker trains between two reads of the shared progress
+    private static final int LEARNING_RATE_UPDATE_INTERVAL = 10_000;
+
+    // (target, context) pairs of one epoch over the corpus, and pairs trained so far by all workers
+    private long pairsPerEpoch;
+    private final AtomicLong trainedPairs = new AtomicLong();
+
+    // Mean loss per (target, context) pair of every epoch trained
+    private final List<Double> epochLosses = new ArrayList<>();
+
+    /**
+     * Heap copies of the rows of one update and its negative samples, owned by one worker so the kernels work on float[]
+     */
+
+    static final class UpdateBuffers {
+        final float[] target;
+        final float[] context;
+        final float[] gradient;
+        final int[] negatives;
+
+        UpdateBuffers(int dim, int negativeSampleSize) {
+            this.target = new float[dim];
+            this.context = new float[dim];
+            this.gradient = new float[dim];
+            this.negatives = new int[negativeSampleSize];
+        }
+    }
 
     /**
      * This is a constructor
      *
      * @param gdbs Grapg Database Service from neo4j
      * @param log To log the results in log file for debugging purpose
-     * @param tx an active transaction to work with database
      * @param windowSize size of the window to be taken for Skip-Gram
      * @param embeddingDim size of the generated embeddings
      * @param negativeSampleSize size of negative samples for training
      * @param learningRate learning rate of the model
+     * @param negativeSamplingExponent distortion exponent of the negative sampling distribution
      * @param epochs number of repetitions of training
-     * @param walk List of nodes
+     * @param earlyStopThreshold stop before epochs when the loss of an epoch improves by less than this fraction, 0 never stops early
+     * @param concurrency number of worker threads used for training
+     * @param randomSeed seed of the initialization and of the negative sampling, the run is repeatable with concurrency 1
+     * @param nodeIds element ids of all nodes, the index in this list is the dense node id
+     * @param nodeTypes type id of every node by dense id, captured while projecting the nodes
+     * @param typeNames canonical label keys by type id
+     * @param walks memory-mapped walk corpus, each walk is an array of dense node ids
      * @throws IOException
      */
 
     public HeterogenousSkipGram(GraphDatabaseService gdbs,
                                 Log log,
-                                Transaction tx,
                                 Long embeddingDim,
                                 Long windowSize,
                                 Long negativeSampleSize,
                                 double learningRate,
+                                double negativeSamplingExponent,
                                 Long epochs,
-                                List<Node> walk) throws IOException {
+                                double earlyStopThreshold,
+                                Long concurrency,
+                                long randomSeed,
+                                List<String> nodeIds,
+                                int[] nodeTypes,
+                                List<String> typeNames,
+                                WalkCorpus walks) throws IOException {
         this.embeddingDim = embeddingDim;
         this.windowSize = windowSize;
         this.negativeSampleSize = negativeSampleSize;
         this.learningRate = learningRate;
+        this.negativeSamplingExponent = negativeSamplingExponent;
         this.epochs = epochs;
-        this.inputEmbeddings = new HashMap<>();
-        this.outputEmbeddings = new HashMap<>();
-        this.nodesByType = new HashMap<>();
-        this.walk = walk;
-
-        this.nodeList = tx.getAllNodes().stream().toList();
-        initializeEmbeddings(nodeList, log);
-        train(walk,log);
+        this.earlyStopThreshold = earlyStopThreshold;
+        this.concurrency = Math.max(1, Math.toIntExact(concurrency));
+        this.nodeIds = nodeIds;
+        this.nodeTypes = nodeTypes;
+        this.typeNames = typeNames;
+        this.random = new SplittableRandom(randomSeed);
+
+        initializeEmbeddings(log);
+
+        /// Walks hold dense ids only, so the workers never touch the transaction
+        this.walks = walks;
+        buildNegativeSamplers(walks, log);
+        train(walks, log);
     }
 
     /**
      * Initialize embeddings for all nodes in the graph
-     * @param nodes List of all nodes of graph
+     * The node types are already known by dense id, nothing is read from the store here
      * @param log
-     * @throws IOException
      */
-    public void initializeEmbeddings(List<Node> nodes, Log log) throws IOException {
-        String nodeTypesFileName = "rawFiles/nodeTypes.csv";
-        createFile(nodeTypesFileName, log);
-        for (Node node : nodes) {
-            String nodeId = node.getElementId();
-            int eDim = Math.toIntExact(embeddingDim);
-            double[] inputVec = new double[eDim];
-            double[] outputVec = new double[eDim];
-            for (int i = 0; i < embeddingDim; i++) {
+    public void initializeEmbeddings(Log log) {
+        int eDim = Math.toIntExact(embeddingDim);
+        int nodeCount = nodeIds.size();
+        inputEmbeddings = new EmbeddingMatrix(nodeCount, eDim);
+        outputEmbeddings = new EmbeddingMatrix(nodeCount, eDim); // output vectors start at 0.0
+        log.info("Allocated " + (inputEmbeddings.bytes() + outputEmbeddings.bytes()) / (1024 * 1024)
+                + " MB off-heap for " + nodeCount + " embeddings");
+
+        int[] typeSizes = new int[typeNames.size()];
+        for (int type : nodeTypes) {
+            typeSizes[type]++;
+        }
+        nodesByType = new int[typeSizes.length][];
+        for (int t = 0; t < typeSizes.length; t++) {
+            nodesByType[t] = new int[typeSizes[t]];
+        }
+        int[] typeFill = new int[typeSizes.length];
+        for (int n = 0; n < nodeCount; n++) {
+            for (int i = 0; i < eDim; i++) {
                 // small random numbers
-                inputVec[i] = (random.nextDouble() - 0.5) / embeddingDim;
-                outputVec[i] = 0.0;
+                inputEmbeddings.set(n, i, (random.nextFloat() - 0.5f) / eDim);
             }
-            inputEmbeddings.put(nodeId, inputVec);
-            outputEmbeddings.put(nodeId, outputVec);
 
             // Group nodes by type for type-specific negative sampling
-            String type = node.getLabels().toString();
-            nodesByType.computeIfAbsent(type, k -> new ArrayList<>()).add(nodeId);
-            saveNodeTypes(nodeId, type, log, nodeTypesFileName);
+            int type = nodeTypes[n];
+            nodesByType[type][typeFill[type]++] = n;
+        }
+    }
+
+    /**
+     * Build the negative sampling tables: per node type an alias table over its nodes, weighted by
+     * how often each node occurs in the walk corpus raised to negativeSamplingExponent (unigram^0.75 in word2vec)
+     * The same pass counts the (target, context) pairs of an epoch, over which the learning rate decays
+     * @param walks
+     * @param log
+     */
 
+    private void buildNegativeSamplers(WalkCorpus walks, Log log) {
+        long[] counts = new long[nodeTypes.length];
+        int[] walk = new int[walks.maxWalkLength()];
+        int wSize = Math.toIntExact(windowSize);
+        pairsPerEpoch = 0;
+        for (int w = 0; w < walks.walkCount(); w++) {
+            int length = walks.walk(w, walk);
+            for (int i = 0; i < length; i++) {
+                counts[walk[i]]++;
+                pairsPerEpoch += Math.min(length - 1, i + wSize) - Math.max(0, i - wSize);
+            }
+        }
+        negativeSamplers = new AliasSampler[nodesByType.length];
+        for (int t = 0; t < nodesByType.length; t++) {
+            int[] candidates = nodesByType[t];
+            long[] candidateCounts = new long[candidates.length];
+            for (int i = 0; i < candidates.length; i++) {
+                candidateCounts[i] = counts[candidates[i]];
+            }
+            negativeSamplers[t] = AliasSampler.fromCounts(candidates, candidateCounts, negativeSamplingExponent);
         }
+        log.info("Built negative sampling tables for " + negativeSamplers.length + " node types with exponent " + negativeSamplingExponent);
     }
 
     /**
-     * Train on the list of walks (each walk is a List<Node>)
-     * @param walk
+     * Train on the walk corpus (each walk is an array of dense node ids)
+     * The corpus is split into one range of walks per worker. In every epoch each worker trains its range in a new
+     * shuffled order, decoding the walks from the mapped file and updating the shared embedding matrices without
+     * locks (Hogwild). The learning rate decays linearly over the pairs of all epochs. After an epoch its mean loss
+     * is logged and training stops early if it improved by less than earlyStopThreshold
+     * The random streams of the workers are split in shard order, but with more than one worker the interleaving
+     * of their updates is up to the scheduler, so only a single worker trains the same model for the same seed
+     * @param walks
      * @param log
      */
 
-    public void train(List<Node> walk, Log log) {
-        for (int epoch = 0; epoch < epochs; epoch++) {
+    public void train(WalkCorpus walks, Log log) {
+        int walkCount = walks.walkCount();
+        int workers = Math.max(1, Math.min(concurrency, walkCount));
+        int shardSize = (walkCount + workers - 1) / workers;
+        long startTime = System.nanoTime();
+        long pairs = 0;
+
+        List<Shard> shards = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            shards.add(new Shard(Math.min(walkCount, w * shardSize), Math.min(walkCount, (w + 1) * shardSize), random.split()));
+        }
+
+        log.info("Training with " + kernels.name() + " kernels");
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            for (int epoch = 0; epoch < epochs; epoch++) {
+                List<Future<?>> results = new ArrayList<>();
+                for (Shard shard : shards) {
+                    results.add(pool.submit(() -> shard.trainEpoch(walks)));
+                }
+                long epochPairs = 0;
+                double epochLoss = 0;
+                for (int w = 0; w < workers; w++) {
+                    results.get(w).get();
+                    epochPairs += shards.get(w).pairs;
+                    epochLoss += shards.get(w).loss;
+                }
+                pairs += epochPairs;
+
+                double loss = epochLoss / Math.max(1, epochPairs);
+                log.info(String.format("Epoch %d of %d: loss %.6f per pair, learning rate %.6f",
+                        epoch + 1, epochs, loss, learningRate(trainedPairs.get())));
+                boolean converged = earlyStopThreshold > 0 && !epochLosses.isEmpty()
+                        && epochLosses.get(epochLosses.size() - 1) - loss < earlyStopThreshold * epochLosses.get(epochLosses.size() - 1);
+                epochLosses.add(loss);
+                if (converged) {
+                    log.info(String.format("Stopping after epoch %d, the loss improved by less than %.4f%%",
+                            epoch + 1, earlyStopThreshold * 100));
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Training was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Training failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double seconds = Math.max(1e-9, (System.nanoTime() - startTime) / 1e9);
+        log.info(String.format("Trained %d (target, context) pairs in %.3f s with %d threads (%.0f pairs/s)",
+                pairs, seconds, workers, pairs / seconds));
+    }
+
+    /**
+     * @param trained pairs trained so far by all workers
+     * @return learning rate after these pairs, decayed linearly over all planned epochs
+     */
+
+    private double learningRate(long trained) {
+        double planned = (double) pairsPerEpoch * epochs + 1;
+        return learningRate * Math.max(MIN_LEARNING_RATE_FRACTION, 1 - trained / planned);
+    }
+
+    /**
+     * State of one worker over all epochs: its range of walks, random stream and buffers, and the pairs and loss
+     * of its last epoch (read by train after the epoch is done)
+     */
+
+    private final class Shard {
+        private final int from;
+        private final int to;
+        private final SplittableRandom random;
+        private final UpdateBuffers buffers;
+        private final int[] walk;
+        private final int[] order;
+        long pairs;
+        double loss;
+
+        Shard(int from, int to, SplittableRandom random) {
+            this.from = from;
+            this.to = to;
+            this.random = random;
+            this.buffers = new UpdateBuffers(inputEmbeddings.dim(), Math.toIntExact(negativeSampleSize));
+            this.walk = new int[walks.maxWalkLength()];
+            this.order = new int[to - from];
+            for (int k = 0; k < order.length; k++) {
+                order[k] = from + k;
+            }
+        }
+
+        /**
+         * Run one epoch over the walks of this shard in a new random order (Fisher-Yates)
+         * @param walks walk corpus
+         */
+
+        void trainEpoch(WalkCorpus walks) {
+            for (int k = order.length - 1; k > 0; k--) {
+                int swap = random.nextInt(k + 1);
+                int w = order[k];
+                order[k] = order[swap];
+                order[swap] = w;
+            }
+
+            pairs = 0;
+            loss = 0;
+            int wSize = Math.toIntExact(windowSize);
+            int negatives = Math.toIntExact(negativeSampleSize);
+            long sinceUpdate = 0;
+            float alpha = (float) learningRate(trainedPairs.get());
+            for (int w : order) {
+                int length = walks.walk(w, walk);
                 // Iterate through each node in the walk
-                for (int i = 0; i < walk.size(); i++) {
-                    Node targetNode = walk.get(i);
-                    String targetId = targetNode.getElementId();
-                    double[] targetVec = inputEmbeddings.get(targetId);
-                    if (targetVec == null) continue;  // Safety check
+                for (int i = 0; i < length; i++) {
+                    int target = walk[i];
 
                     // Determine the window boundaries
-                    int wSize = Math.toIntExact(windowSize);
                     int start = Math.max(0, i - wSize);
-                    int end = Math.min(walk.size(), i + wSize + 1);
-                    //System.out.println("start: " + start + " end: " + end);
+                    int end = Math.min(length, i + wSize + 1);
 
                     // Loop through context nodes
                     for (int j = start; j < end; j++) {
                         if (j == i) continue;
-                        Node contextNode = walk.get(j);
-                        String contextId = contextNode.getElementId();
-                        //System.out.println("contextId: " + contextNode.getProperty("name"));
+                        int context = walk[j];
 
                         // Get the type-specific negative sampling candidates (exclude the context type)
-                        String contextType = contextNode.getLabels().toString();
-
-                        // Update with positive sample: maximize sigma(input * output)
-                        updateParameters(targetId, contextId, true, contextType, log);
+                        int contextType = nodeTypes[context];
 
                         // Negative sampling: sample negativeSampleSize nodes of the same type as context
-                        for (int n = 0; n < negativeSampleSize; n++) {
-                            //System.out.println(k++);//102
-                            String negativeId = sampleNegative(contextType, contextId, log);
-                            if (negativeId == null) {
-                                log.warn("Skipping negative update due to null negativeId for contextType: " + contextType);
-                                continue;
+                        int negativeCount = 0;
+                        for (int n = 0; n < negatives; n++) {
+                            int negative = sampleNegative(contextType, context, random);
+                            if (negative < 0) {
+                                continue; // drew the context itself, skipped like word2vec does
                             }
-                            updateParameters(targetId, negativeId, false, contextType, log);
+                            buffers.negatives[negativeCount++] = negative;
+                        }
+
+                        // Maximize sigma(input * output) of the context, minimize it for the negatives, in one update
+                        loss += updateParameters(target, context, negativeCount, alpha, buffers);
+                        pairs++;
+
+                        if (++sinceUpdate == LEARNING_RATE_UPDATE_INTERVAL) {
+                            alpha = (float) learningRate(trainedPairs.addAndGet(sinceUpdate));
+                            sinceUpdate = 0;
                         }
                     }
                 }
-            // Optionally: decay learning rate or shuffle walks
+            }
+            trainedPairs.addAndGet(sinceUpdate);
         }
     }
 
     /**
-     * This is to update parameters in embedding vectors
-     * @param targetId ElementId of target node
-     * @param contextId ElementId of context node
-     * @param positive label for positive or negative data
-     * @param contextType Node type of context node
-     * @param log
+     * This is to update parameters in embedding vectors for one context and its negative samples, like word2vec
+     * The target row is read once and stays fixed while the context and every negative row is updated against it,
+     * its gradient is accumulated in the buffers and added to the target once at the end. Rows are read into the
+     * buffers but only ever updated in place by their delta, so the updates of other workers are kept (Hogwild)
+     * @param target dense id of target node
+     * @param context dense id of context node, label 1
+     * @param negativeCount number of negative samples in buffers.negatives, label 0
+     * @param alpha current learning rate
+     * @param buffers row buffers of the calling worker
+     * @return negative-sampling loss of the update, -log sigma(target * context) - sum of log sigma(-target * negative)
      */
 
-    private void updateParameters(String targetId, String contextId, boolean positive, String contextType, Log log) {
-
-        double[] targetVec = inputEmbeddings.get(targetId);
-        double[] contextVec = outputEmbeddings.get(contextId);
-
-        // Defensive check: if contextVec is null, log and return
-        if (contextVec == null) {
-            log.warn("Skipping update: contextVec is null for contextId: " + contextId);
-            return;
-        }
-        if (targetVec == null) {
-            log.warn("Skipping update: targetVec is null for contextId: " + contextId);
-            return;
-        }
-
-        // Compute dot product
-        double dot = 0.0;
-        for (int i = 0; i < embeddingDim; i++) {
-            dot += targetVec[i] * contextVec[i];
-        }
-
-        // Calculate gradient: sigma(x) = 1 / (1 + exp(-x))
-        double sigmoid = 1.0 / (1.0 + Math.exp(-dot));
-        // For positive sample, label = 1; for negative, label = 0
-        double error = (positive ? 1 : 0) - sigmoid;
-
-        // Update target and context vectors
-        for (int i = 0; i < embeddingDim; i++) {
-            double gradTarget = error * contextVec[i];
-            double gradContext = error * targetVec[i];
-            targetVec[i] += learningRate * gradTarget;
-            contextVec[i] += learningRate * gradContext;
+    float updateParameters(int target, int context, int negativeCount, float alpha, UpdateBuffers buffers) {
+        int dim = inputEmbeddings.dim();
+        float[] targetRow = buffers.target;
+        float[] contextRow = buffers.context;
+        float[] gradient = buffers.gradient;
+        inputEmbeddings.readRow(target, targetRow);
+        Arrays.fill(gradient, 0, dim, 0f);
+        float loss = 0f;
+
+        for (int k = -1; k < negativeCount; k++) {
+            int output = k < 0 ? context : buffers.negatives[k];
+            outputEmbeddings.readRow(output, contextRow);
+
+            // sigma(input * output) from the table
+            float dot = kernels.dot(targetRow, contextRow, dim);
+            float sigmoid = VectorKernels.sigmoid(dot);
+            loss -= VectorKernels.logSigmoid(k < 0 ? dot : -dot);
+            // For positive sample, label = 1; for negative, label = 0, scaled by the learning rate
+            float g = ((k < 0 ? 1 : 0) - sigmoid) * alpha;
+
+            kernels.axpy(g, contextRow, gradient, dim);
+            outputEmbeddings.addToRow(output, g, targetRow);
         }
 
-        // Write back updates (if using mutable arrays this step may be implicit)
-        inputEmbeddings.put(targetId, targetVec);
-        outputEmbeddings.put(contextId, contextVec);
-
+        inputEmbeddings.addToRow(target, 1f, gradient);
+        return loss;
     }
 
     /**
      * This is to generate negative samples of walks
-     * @param contextType
-     * @param trueContextId
-     * @param log
-     * @return
+     * One O(1) draw from the alias table of the context type, no retry loop
+     * @param contextType type id of the context node
+     * @param trueContext dense id of the context node
+     * @param random random generator of the calling worker
+     * @return dense id of the negative sample, -1 if the draw hit the context node
      */
 
-    private String sampleNegative(String contextType, String trueContextId, Log log) {
-
-        List<String> candidates = nodesByType.get(contextType);
-
-        // Check if there are enough candidates to sample a negative example
-        if (candidates == null || candidates.isEmpty()) {
-            log.warn("Skipping negative sampling: No candidates available for type: " + contextType);
-            return null; // Skip negative sample
-        }
-
-        if (candidates.size() == 1 && candidates.get(0).equals(trueContextId)) {
-            log.warn("Skipping negative sampling: Only one node available for type: " + contextType);
-            return null; // Skip negative sample
-        }
-
-        String sampled;
-        do {
-            sampled = candidates.get(random.nextInt(candidates.size()));
-        } while (sampled.equals(trueContextId));
-        return sampled;
+    private int sampleNegative(int contextType, int trueContext, SplittableRandom random) {
+        int sampled = negativeSamplers[contextType].sample(random);
+        return sampled == trueContext ? -1 : sampled;
     }
 
     /**
      * Get the embedding vector for a node
-     * @param nodeId
-     * @return
+     * @param node dense node id
+     * @return copy of the input vector
      */
-    public double[] getEmbedding(String nodeId) {
-        return inputEmbeddings.get(nodeId);
+    public float[] getEmbedding(int node) {
+        return inputEmbeddings.getRow(node);
     }
 
-    public void createFile(String filePath, Log log) throws IOException {
-        try {
-            File file = new File(filePath);
-            if (file.exists()) {
-                // Delete the file if it exists
-                file.delete();
-            }
-            // Create a new empty file
-            file.createNewFile();
-
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, true))) {
-                writer.write("nodeId,nodeType");
-                writer.newLine();
-                log.info("Initialized new nodeTypes file at: " + filePath);
-            }
-        } catch (IOException e) {
-            log.error("Error initializing walks.txt: " + e.getMessage());
-        }
+    public int nodeCount() {
+        return nodeIds.size();
     }
 
     /**
-     * This is to save the nodes and their types in a csv file(for testing purpose
-     * @param nodeId
-     * @param nodeType
-     * @param log
-     * @param nodeTypesFileName file name
+     * @return mean loss per (target, context) pair of every trained epoch, fewer than epochs if training stopped early
      */
-
-    public void saveNodeTypes(String nodeId, String nodeType, Log log, String nodeTypesFileName) {
-
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(nodeTypesFileName, true))) {
-
-            writer.write(nodeId);
-            writer.write(',');
-            writer.write(nodeType);
-            writer.newLine();
-
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
+    public List<Double> epochLosses() {
+        return epochLosses;
     }
 
 }
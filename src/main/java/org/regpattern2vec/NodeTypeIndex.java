@@ -0,0 +1,80 @@
+package org.regpattern2vec;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+
+import java.util.*;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file maps the label set of every node to an int type id, once, while the nodes are projected.
+ * Multi-label sets are normalized into a canonical key (sorted label names, e.g. ":Movie:Person"),
+ * so the order the store returns the labels in does not matter. Training then only reads the int ids.
+ */
+
+public class NodeTypeIndex {
+
+    private final Map<String, Integer> typeIds = new HashMap<>();
+    private final List<String> typeNames = new ArrayList<>();
+    private int[] nodeTypes = new int[1024];
+    private int nodeCount = 0;
+
+    /**
+     * This method is to add the next node, in dense id order
+     * @param node node of the graph
+     * @return type id of the node
+     */
+
+    public int add(Node node) {
+        int type = typeId(labelKey(node));
+        if (nodeCount == nodeTypes.length) {
+            nodeTypes = Arrays.copyOf(nodeTypes, nodeTypes.length * 2);
+        }
+        nodeTypes[nodeCount++] = type;
+        return type;
+    }
+
+    private int typeId(String key) {
+        Integer type = typeIds.get(key);
+        if (type == null) {
+            type = typeNames.size();
+            typeIds.put(key, type);
+            typeNames.add(key);
+        }
+        return type;
+    }
+
+    /**
+     * @param node node of the graph
+     * @return canonical key of the label set of the node
+     */
+
+    public static String labelKey(Node node) {
+        List<String> labels = new ArrayList<>();
+        for (Label label : node.getLabels()) {
+            labels.add(label.name());
+        }
+        Collections.sort(labels);
+        StringBuilder key = new StringBuilder();
+        for (String label : labels) {
+            key.append(':').append(label);
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return type id of every node by dense id
+     */
+
+    public int[] nodeTypes() {
+        return Arrays.copyOf(nodeTypes, nodeCount);
+    }
+
+    /**
+     * @return canonical label keys by type id
+     */
+
+    public List<String> typeNames() {
+        return typeNames;
+    }
+}
@@ -6,9 +6,14 @@ import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.DoubleStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -19,21 +24,36 @@ import java.util.stream.Stream;
 public class RegPattern2VecStream {
 
     public class Output {
-        public final Map<String, double[]> embedding;
-        public Output(Map<String, double[]> embedding) {
+        public final String nodeId;
+        public final List<Double> embedding;
+        public Output(String nodeId, List<Double> embedding) {
+            this.nodeId = nodeId;
             this.embedding = embedding;
         }
     }
 
+    public class WriteOutput {
+        public final long nodesWritten;
+        public final long batches;
+        public final long writeMillis;
+        public WriteOutput(long nodesWritten, long batches, long writeMillis) {
+            this.nodesWritten = nodesWritten;
+            this.batches = batches;
+            this.writeMillis = writeMillis;
+        }
+    }
+
     @Context
     public GraphDatabaseService gdbs;
     @Context
     public Log log;
 
-    static List<List<Node>> regularExpressionRandomWalks = new ArrayList<>();
-    static Map<String, double[]> embeddings = new HashMap<>();
-    static String walkFileName = "rawFiles/walks.txt";
-    static String embeddingFileName = "rawFiles/embeddings.tsv";
+
+    /// Compiled DFAs of recent patterns, shared by all calls
+    static final DfaCache dfaCache = new DfaCache(DfaCache.DEFAULT_CAPACITY);
+
+    /// Number of start nodes per walk partition, fixed so that the walks do not depend on the thread count
+    static final int walkPartitionSize = 10_000;
 
     @Procedure(value = "embeddings.regpattern2vec.stream", mode = Mode.READ)
     @Description("Stream the embeddings of RegPattern2Vec")
@@ -48,8 +68,22 @@ public class RegPattern2VecStream {
      * @param negativeSampleSize size of negative samples for training
      * @param learningRate learning rate of the model
      * @param epochs number of repetitions of training
+     * @param concurrency number of threads used to generate walks and to train the Skip-Gram model
+     * @param projectGraph load the graph into an in-memory projection before generating walks
+     * @param exportPrecision precision of the npy and raw exports: float32, float16 or int8
+     * @param negativeSamplingExponent distortion exponent of the negative sampling distribution, 0 samples uniformly
+     * @param walkCorpusPath binary walk corpus to train on, reused if the file exists, written there otherwise; relative to the import directory; empty writes walks.bin of the run
+     * @param exportFormat file format of the embedding export: tsv, word2vec, npy, raw or none
+     * @param outputDirectory directory of the run outputs relative to the import directory, every call writes into its own <outputDirectory>/<runId>; empty for regpattern2vec
+     * @param exportNodeTypes write the type of every node to nodeTypes.csv of the run, once
+     * @param verbose tracing written to the Neo4j log: off, debug (DFA construction) or trace (also sampled walk steps)
+     * @param traceSampleRate fraction of the trace events of the walks that is written, between 0 and 1
+     * @param randomSeed seed of the walks and of the training, -1 draws a new seed that is written to the log
+     * @param earlyStopThreshold stop training before epochs when the loss of an epoch improves by less than this fraction, 0 trains all epochs
+     * @param keepWalks keep walks.bin of the run after training, a walkCorpusPath corpus is always kept
+     * @param keepRuns number of completed runs kept in outputDirectory including this one, older ones are deleted when this run completes; 0 keeps all
      *
-     * @return Stream of Output i.e. embeddings of each node
+     * @return Stream of Output i.e. one row with the embedding of each node, built lazily while the client consumes it
      */
 
     public Stream<Output> regpattern2vec(@Name("regPattern") String regPattern,
@@ -59,185 +93,558 @@ public class RegPattern2VecStream {
                                          @Name(value = "embeddingDimension", defaultValue = "128") Long embeddingDimension,
                                          @Name(value = "negativeSampleSize", defaultValue = "5") Long negativeSampleSize,
                                          @Name(value = "learningRate", defaultValue = "0.01") Double learningRate,
-                                         @Name(value = "epochs", defaultValue = "1") Long epochs) {
+                                         @Name(value = "epochs", defaultValue = "1") Long epochs,
+                                         @Name(value = "concurrency", defaultValue = "4") Long concurrency,
+                                         @Name(value = "projectGraph", defaultValue = "true") Boolean projectGraph,
+                                         @Name(value = "exportPrecision", defaultValue = "float32") String exportPrecision,
+                                         @Name(value = "negativeSamplingExponent", defaultValue = "0.75") Double negativeSamplingExponent,
+                                         @Name(value = "walkCorpusPath", defaultValue = "") String walkCorpusPath,
+                                         @Name(value = "exportFormat", defaultValue = "tsv") String exportFormat,
+                                         @Name(value = "outputDirectory", defaultValue = "") String outputDirectory,
+                                         @Name(value = "exportNodeTypes", defaultValue = "false") Boolean exportNodeTypes,
+                                         @Name(value = "verbose", defaultValue = "off") String verbose,
+                                         @Name(value = "traceSampleRate", defaultValue = "0.01") Double traceSampleRate,
+                                         @Name(value = "randomSeed", defaultValue = "-1") Long randomSeed,
+                                         @Name(value = "earlyStopThreshold", defaultValue = "0.0") Double earlyStopThreshold,
+                                         @Name(value = "keepWalks", defaultValue = "false") Boolean keepWalks,
+                                         @Name(value = "keepRuns", defaultValue = "0") Long keepRuns) {
+
+        RunContext run = computeEmbeddings(regPattern, walkLength, walkCount, windowSize, embeddingDimension,
+                negativeSampleSize, learningRate, epochs, concurrency, projectGraph, exportPrecision,
+                negativeSamplingExponent, walkCorpusPath, exportFormat, outputDirectory, exportNodeTypes, verbose,
+                traceSampleRate, randomSeed, earlyStopThreshold, keepWalks, keepRuns);
+
+        /// One row per node, the vector is only copied into a row when the client pulls it
+        return IntStream.range(0, run.nodeIds().size())
+                .mapToObj(node -> new Output(run.nodeIds().get(node), toList(run.model().getEmbedding(node))));
+    }
 
-        log.info("RegPattern2Vec plugin is loading...");
-        ///Clear any existing walks.
-        regularExpressionRandomWalks.clear();
-        createFile(walkFileName);
-        createFile(embeddingFileName);
+    @Procedure(value = "embeddings.regpattern2vec.write", mode = Mode.WRITE)
+    @Description("Write the embeddings of RegPattern2Vec to a node property, the parameters after writeProperty and batchSize are the ones of embeddings.regpattern2vec.stream")
 
-        try (Transaction tx = gdbs.beginTx()) {
+    /**
+     * This is the starting method of the write procedure, the embeddings are stored as float[] node properties
+     * in batches, every batch is committed in its own transaction
+     * The other parameters are the ones of the stream procedure, see {@link #regpattern2vec}
+     * @param regPattern The regular expression
+     * @param writeProperty node property the embedding is written to
+     * @param batchSize number of nodes written per transaction
+     * @param concurrency number of threads used to generate walks, to train the Skip-Gram model and to write
+     * @param exportFormat file format of the embedding export, none by default as the embeddings are in the graph
+     *
+     * @return Stream of WriteOutput i.e. one row with the statistics of the write
+     */
 
-            Set<String> labelsSet = new HashSet<>();
-            Set<String> relTypesSet = new HashSet<>();
+    public Stream<WriteOutput> regpattern2vecWrite(@Name("regPattern") String regPattern,
+                                                   @Name(value = "writeProperty", defaultValue = "regpattern2vec") String writeProperty,
+                                                   @Name(value = "batchSize", defaultValue = "10000") Long batchSize,
+                                                   @Name(value = "walkLength", defaultValue = "10") Long walkLength,
+                                                   @Name(value = "walkCount", defaultValue = "5") Long walkCount,
+                                                   @Name(value = "windowSize", defaultValue = "3") Long windowSize,
+                                                   @Name(value = "embeddingDimension", defaultValue = "128") Long embeddingDimension,
+                                                   @Name(value = "negativeSampleSize", defaultValue = "5") Long negativeSampleSize,
+                                                   @Name(value = "learningRate", defaultValue = "0.01") Double learningRate,
+                                                   @Name(value = "epochs", defaultValue = "1") Long epochs,
+                                                   @Name(value = "concurrency", defaultValue = "4") Long concurrency,
+                                                   @Name(value = "projectGraph", defaultValue = "true") Boolean projectGraph,
+                                                   @Name(value = "exportPrecision", defaultValue = "float32") String exportPrecision,
+                                                   @Name(value = "negativeSamplingExponent", defaultValue = "0.75") Double negativeSamplingExponent,
+                                                   @Name(value = "walkCorpusPath", defaultValue = "") String walkCorpusPath,
+                                                   @Name(value = "exportFormat", defaultValue = "none") String exportFormat,
+                                                   @Name(value = "outputDirectory", defaultValue = "") String outputDirectory,
+                                                   @Name(value = "exportNodeTypes", defaultValue = "false") Boolean exportNodeTypes,
+                                                   @Name(value = "verbose", defaultValue = "off") String verbose,
+                                                   @Name(value = "traceSampleRate", defaultValue = "0.01") Double traceSampleRate,
+                                                   @Name(value = "randomSeed", defaultValue = "-1") Long randomSeed,
+                                                   @Name(value = "earlyStopThreshold", defaultValue = "0.0") Double earlyStopThreshold,
+                                                   @Name(value = "keepWalks", defaultValue = "false") Boolean keepWalks,
+                                                   @Name(value = "keepRuns", defaultValue = "0") Long keepRuns) {
+
+        RunContext run = computeEmbeddings(regPattern, walkLength, walkCount, windowSize, embeddingDimension,
+                negativeSampleSize, learningRate, epochs, concurrency, projectGraph, exportPrecision,
+                negativeSamplingExponent, walkCorpusPath, exportFormat, outputDirectory, exportNodeTypes, verbose,
+                traceSampleRate, randomSeed, earlyStopThreshold, keepWalks, keepRuns);
+        return Stream.of(writeEmbeddings(run.nodeIds(), run.model(), writeProperty, batchSize, concurrency));
+    }
 
-            /// Iterate over all nodes to collect labels
-//            for (Node node : tx.getAllNodes()) {
-//                for (Label label : node.getLabels()) {
-//                    labelsSet.add(label.name());
-//                }
-//            }
+    /**
+     * This method is to write the embeddings to node properties with parallel writers
+     * @param nodeIds element ids of the nodes to write
+     * @param hsg trained model
+     * @param writeProperty node property the embedding is written to
+     * @param batchSize number of nodes written per transaction
+     * @param concurrency number of writer threads
+     * @return statistics of the write
+     */
 
-            /// Iterate over all relationships to collect relationship types
-            for (Relationship rel : tx.getAllRelationships()) {
-                RelationshipType type = rel.getType();
-                relTypesSet.add(type.name());
+    private WriteOutput writeEmbeddings(List<String> nodeIds, HeterogenousSkipGram hsg, String writeProperty, Long batchSize, Long concurrency) {
+        long startTime = System.nanoTime();
+        int size = Math.max(1, Math.toIntExact(batchSize));
+        int batches = (nodeIds.size() + size - 1) / size;
+        int workers = Math.max(1, Math.min(Math.toIntExact(concurrency), batches));
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        long nodesWritten = 0;
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int b = 0; b < batches; b++) {
+                int from = b * size;
+                int to = Math.min(nodeIds.size(), (b + 1) * size);
+                results.add(pool.submit(() -> {
+                    int written = 0;
+                    try (Transaction tx = gdbs.beginTx()) {
+                        for (int node = from; node < to; node++) {
+                            tx.getNodeByElementId(nodeIds.get(node)).setProperty(writeProperty, hsg.getEmbedding(node));
+                            written++;
+                        }
+                        tx.commit();
+                    }
+                    return written;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                nodesWritten += result.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Writing embeddings was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Writing embeddings failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long writeMillis = (System.nanoTime() - startTime) / 1_000_000;
+        log.info("Wrote " + nodesWritten + " embeddings to property " + writeProperty + " in " + batches + " batches in " + writeMillis + " ms");
+        return new WriteOutput(nodesWritten, batches, writeMillis);
+    }
 
-            /// Convert sets to lists if needed
-            List<String> labelsList = new ArrayList<>(labelsSet);
-            List<String> relTypesList = new ArrayList<>(relTypesSet);
+    /**
+     * This method is the pipeline shared by the procedures: DFA, walks and training
+     * All state of the call is kept in its own RunContext, so concurrent calls do not share anything
+     * The parameters are the ones of the stream procedure, see {@link #regpattern2vec}
+     *
+     * @return context of the run with the nodes and the trained model
+     * @throws RuntimeException if the run failed, with the message of the cause, so the caller gets the error
+     */
 
-            RegexToDfa rd = new RegexToDfa(relTypesList, regPattern);
+    private RunContext computeEmbeddings(String regPattern, Long walkLength, Long walkCount,
+                                         Long windowSize, Long embeddingDimension, Long negativeSampleSize,
+                                         Double learningRate, Long epochs, Long concurrency, Boolean projectGraph,
+                                         String exportPrecision, Double negativeSamplingExponent,
+                                         String walkCorpusPath, String exportFormat, String outputDirectory,
+                                         Boolean exportNodeTypes, String verbose, Double traceSampleRate,
+                                         Long randomSeed, Double earlyStopThreshold, Boolean keepWalks, Long keepRuns) {
 
-            for (Node node : tx.getAllNodes()) {
-                //System.out.println("Node: " + node.getProperty("name"));
-                List<Node> nodeRecords;
-                for (int i = 1; i <= walkCount; i++) {
+        log.info("RegPattern2Vec plugin is loading...");
 
-                    nodeRecords = RegularExpressionRandomWalks(gdbs, rd.DStates, node, walkLength);
-                    saveWalksInFile(nodeRecords);
-                    HeterogenousSkipGram hsg = new HeterogenousSkipGram(gdbs, log, tx, embeddingDimension,windowSize,negativeSampleSize,learningRate,epochs, nodeRecords);
-                    embeddings.put(node.getElementId(),hsg.inputEmbeddings.get(node.getElementId()));
+        try (Transaction tx = gdbs.beginTx()) {
+
+            /// The arguments are checked before the run directory is created, a rejected call leaves no files
+            /// TSV and WORD2VEC only store float32
+            EmbeddingPrecision precision = EmbeddingPrecision.parse(exportPrecision);
+            ExportFormat format = ExportFormat.parse(exportFormat);
+            format.checkPrecision(precision);
+            Tracer tracer = new Tracer(log, Tracer.Level.parse(verbose), traceSampleRate);
+
+            /// Relationship types from the token store, the DFA is compiled once per pattern and type catalog
+            List<String> relTypesList = DfaCache.relationshipTypes(tx);
+            CompiledDfa dfa = dfaCache.get(regPattern, relTypesList, tracer);
+            if (dfa == null) {
+                throw new IllegalArgumentException("Incorrect Relationship Type in Given Regular Expression: " + regPattern);
+            }
 
-                    for(Node nodeRecord: nodeRecords) {
-                        //System.out.print(nodeRecord.getLabels().toString()+" ");
-                        //System.out.println(nodeRecord.getProperty("name"));
+            /// A drawn seed is logged, so that a run can be repeated with it
+            long seed = randomSeed == null || randomSeed < 0 ? new SplittableRandom().nextLong() & Long.MAX_VALUE : randomSeed;
+            RunContext run = new RunContext(tracer, RunFiles.create(gdbs, outputDirectory), precision, format, seed);
+            RunFiles files = run.files;
+            List<String> nodeIds = run.nodeIds;
+            NodeTypeIndex nodeTypes = run.nodeTypes;
+            log.info("RegPattern2Vec run " + files.runId() + " writes to " + files.directory() + ", random seed " + seed);
+
+            Path corpusPath = walkCorpusPath == null || walkCorpusPath.isEmpty() ? files.walks() : files.resolveUserPath(walkCorpusPath);
+            int walkParametersHash = walkParametersHash(regPattern, walkLength, walkCount);
+            if (walkCorpusPath != null && !walkCorpusPath.isEmpty() && Files.exists(corpusPath)) {
+                /// Reuse the walks of an earlier run, the dense ids are the ones the corpus was written with
+                run.corpus = WalkCorpus.open(corpusPath);
+                if (run.corpus.parametersHash() != walkParametersHash) {
+                    throw new IllegalArgumentException("Walk corpus " + corpusPath + " was generated with another regPattern, "
+                            + "walkLength or walkCount, delete it or pass another walkCorpusPath");
+                }
+                for (String nodeId : run.corpus.nodeIds()) {
+                    try {
+                        nodeTypes.add(tx.getNodeByElementId(nodeId));
+                    } catch (NotFoundException e) {
+                        throw new IllegalArgumentException("Walk corpus " + corpusPath + " does not match the graph, node "
+                                + nodeId + " no longer exists", e);
+                    }
+                    nodeIds.add(nodeId);
+                }
+                log.info("Reusing " + run.corpus.walkCount() + " walks from " + corpusPath);
+            } else {
+                /// Generate the whole walk corpus first, so that one model can be trained over all of it
+                GraphProjection projection = null;
+                if (projectGraph) {
+                    projection = GraphProjection.load(tx, dfa, nodeTypes, log);
+                    for (int n = 0; n < projection.nodeCount(); n++) {
+                        nodeIds.add(projection.elementId(n));
+                    }
+                } else {
+                    for (Node node : tx.getAllNodes()) {
+                        nodeIds.add(node.getElementId());
+                        nodeTypes.add(node);
                     }
-                    System.out.println();
+                }
+                /// A failed generation leaves no corpus behind, so it is never reused
+                WalkCorpus.Writer writer = new WalkCorpus.Writer(corpusPath, nodeIds, walkParametersHash);
+                try {
+                    generateWalks(nodeIds, projection, dfa, walkLength, walkCount, concurrency, walkPartitionSize, run.seed, writer, run.tracer);
+                } catch (Exception e) {
+                    writer.abort();
+                    throw e;
+                }
+                writer.close();
+                run.corpus = WalkCorpus.open(corpusPath);
+            }
 
+            if (exportNodeTypes) {
+                saveNodeTypesInFile(nodeIds, nodeTypes, files.nodeTypes());
+            }
+
+            /// Train a single Skip-Gram model over the corpus, every node keeps its own vector
+            run.model = new HeterogenousSkipGram(gdbs, log, embeddingDimension,windowSize,negativeSampleSize,learningRate,negativeSamplingExponent,epochs,earlyStopThreshold,concurrency,
+                    run.seed, nodeIds, nodeTypes.nodeTypes(), nodeTypes.typeNames(), run.corpus);
+
+            if (run.format != ExportFormat.NONE) {
+                saveEmbeddingsInFile(nodeIds, run.model, run.format, run.precision, files.embeddings());
+            }
+
+            /// The walks of the run are only needed for training, a corpus at walkCorpusPath is kept for later runs
+            if (!Boolean.TRUE.equals(keepWalks) && corpusPath.equals(files.walks())) {
+                run.corpus = null;
+                try {
+                    Files.deleteIfExists(corpusPath);
+                } catch (IOException e) {
+                    log.warn("Could not delete the walk corpus " + corpusPath + ": " + e.getMessage());
                 }
             }
 
-            System.out.println("Embeddings: " + embeddings);
-            saveEmbeddingsInFile(embeddings);
+            /// Only completed runs are pruned, so runs of concurrent calls keep their directories
+            files.complete();
+            int deletedRuns = files.deleteOldRuns(keepRuns == null ? 0 : keepRuns);
+            if (deletedRuns > 0) {
+                log.info("Deleted " + deletedRuns + " old runs, keeping the newest " + keepRuns);
+            }
+            return run;
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("RegPattern2Vec failed: " + e.getMessage(), e);
+            throw new RuntimeException("RegPattern2Vec failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * This method is to identify the walks a corpus holds, a reused corpus has to match the parameters of the call
+     * @param regPattern The regular expression
+     * @param walkLength Max. Length of each walk
+     * @param walkCount Number of walks per node
+     * @return hash of the walk parameters
+     */
+
+    static int walkParametersHash(String regPattern, Long walkLength, Long walkCount) {
+        return Objects.hash(regPattern, walkLength, walkCount);
+    }
+
+    /**
+     * This method is to convert an embedding to the list type of procedure outputs
+     * @param vec embedding of a node
+     * @return coordinates of the embedding
+     */
+
+    private static List<Double> toList(float[] vec) {
+        List<Double> list = new ArrayList<>(vec.length);
+        for (float value : vec) {
+            list.add((double) value);
+        }
+        return list;
+    }
+
+    /**
+     * This method is to generate the walks of all nodes in parallel
+     * Nodes are split into ranges of partitionSize, every partition is walked by a worker
+     * in its own read transaction (or over the projection) with its own SplittableRandom, and the results
+     * are appended to the corpus in partition order. Only 2 * workers partitions are kept on the heap at a time
+     *
+     * @param nodeIds element ids of all start nodes
+     * @param projection in-memory projection of the graph, null to walk through transactions
+     * @param dfa compiled DFA of Regular Expression
+     * @param walkLength Length of a walk
+     * @param walkCount Number of walks per node
+     * @param concurrency number of worker threads
+     * @param partitionSize number of start nodes per partition, the walks of a seed depend on it but not on concurrency
+     * @param seed seed of the walks, partition p gets the p-th split of it
+     * @param writer receives the walks of all nodes, each walk is an array of dense node ids i.e. indexes in nodeIds
+     * @param tracer tracing of the procedure call, the steps of the walks are sampled trace events
+     */
+
+    void generateWalks(List<String> nodeIds, GraphProjection projection, CompiledDfa dfa, Long walkLength, Long walkCount,
+                       Long concurrency, int partitionSize, long seed, WalkCorpus.Writer writer, Tracer tracer)
+            throws InterruptedException, ExecutionException, IOException {
+
+        int partitions = (nodeIds.size() + partitionSize - 1) / partitionSize;
+        int workers = Math.max(1, Math.min(Math.toIntExact(concurrency), partitions));
+        long startTime = System.nanoTime();
+
+        RelationshipType[] relationshipTypes = new RelationshipType[dfa.numTypes()];
+        for (int t = 0; t < relationshipTypes.length; t++) {
+            relationshipTypes[t] = RelationshipType.withName(dfa.typeName(t));
+        }
+
+        Map<String, Integer> denseIds = new HashMap<>();
+        if (projection == null) {
+            for (int n = 0; n < nodeIds.size(); n++) {
+                denseIds.put(nodeIds.get(n), n);
+            }
+        }
+
+        /// Streams split in partition order on this thread, so the walks do not depend on the scheduling of the workers
+        SplittableRandom walkRandom = new SplittableRandom(seed);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            /// At most two partitions per worker are in flight, the oldest is written and dropped before the next is submitted
+            Deque<Future<List<int[]>>> pending = new ArrayDeque<>();
+            for (int p = 0; p < partitions; p++) {
+                if (pending.size() == 2 * workers) {
+                    writePartition(pending.removeFirst(), writer);
+                }
+                int from = p * partitionSize;
+                int to = Math.min(nodeIds.size(), (p + 1) * partitionSize);
+                List<String> partition = nodeIds.subList(from, to);
+                SplittableRandom random = walkRandom.split();
+                pending.addLast(pool.submit(() -> {
+                    List<int[]> partitionWalks = new ArrayList<>();
+                    if (projection != null) {
+                        for (int node = from; node < to; node++) {
+                            for (int i = 1; i <= walkCount; i++) {
+                                partitionWalks.add(RegularExpressionRandomWalks(projection, dfa, node, walkLength, random, tracer));
+                            }
+                        }
+                        return partitionWalks;
+                    }
+                    try (Transaction tx = gdbs.beginTx()) {
+                        for (String nodeId : partition) {
+                            Node node = tx.getNodeByElementId(nodeId);
+                            for (int i = 1; i <= walkCount; i++) {
+                                String[] walkIds = RegularExpressionRandomWalks(gdbs, dfa, relationshipTypes, node, walkLength, random, tracer);
+                                /// A node created after the nodes were listed has no dense id, the walk ends before it
+                                int length = 0;
+                                int[] walk = new int[walkIds.length];
+                                while (length < walk.length) {
+                                    Integer id = denseIds.get(walkIds[length]);
+                                    if (id == null) {
+                                        break;
+                                    }
+                                    walk[length++] = id;
+                                }
+                                partitionWalks.add(length == walk.length ? walk : Arrays.copyOf(walk, length));
+                            }
+                        }
+                    }
+                    return partitionWalks;
+                }));
+            }
+            while (!pending.isEmpty()) {
+                writePartition(pending.removeFirst(), writer);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        log.info(String.format("Generated %d walks from %d nodes in %d partitions with %d threads in %d ms",
+                writer.walkCount(), nodeIds.size(), partitions, workers, (System.nanoTime() - startTime) / 1_000_000));
+    }
+
+    /**
+     * This method is to append the walks of a partition to the corpus once its worker is done
+     * @param partition walks of the partition
+     * @param writer walk corpus
+     */
+
+    private static void writePartition(Future<List<int[]>> partition, WalkCorpus.Writer writer)
+            throws InterruptedException, ExecutionException, IOException {
+        for (int[] walk : partition.get()) {
+            writer.add(walk);
         }
-        Output Output = new Output(embeddings);
-        return Stream.of(Output);
     }
 
     /**
      * This method if to generate walks from a node
+     * Every step only expands the relationship types the current DFA state accepts, and picks one of
+     * their relationships uniformly using the degree per type, without loading the whole adjacency
      *
      * @param gd GraphDataBaseService
-     * @param transitions List of transitions of DFA of Regular Expression
+     * @param dfa compiled DFA of Regular Expression
+     * @param relationshipTypes relationship types by their id in the DFA
      * @param node starting node
      * @param walkLength Length of a walk
+     * @param random random generator of the calling worker
+     * @param tracer tracing of the procedure call
      *
-     * @return walk i.e. list of nodes
+     * @return walk i.e. element ids of the nodes
      */
 
-    private List<Node> RegularExpressionRandomWalks(GraphDatabaseService gd, List<State> transitions, Node node, Long walkLength){
+    private String[] RegularExpressionRandomWalks(GraphDatabaseService gd, CompiledDfa dfa, RelationshipType[] relationshipTypes,
+                                                  Node node, Long walkLength, SplittableRandom random, Tracer tracer){
 
         List<Node> regularExpressionRandomWalk = new ArrayList<>(List.of(node));
-        State currentState = transitions.stream().filter(state -> state.isFirstState).findFirst().orElse(null);
-        assert currentState != null;
+        int currentState = dfa.startState();
 
         Node currentNode = regularExpressionRandomWalk.get(regularExpressionRandomWalk.size() - 1);
-        Random random = new Random();
 
         for(int i = 1; i <= walkLength-1; i++) {
 
-            Iterable<Relationship> allNeighbourRelationships = currentNode.getRelationships();
-            List<Relationship> neighbours = new ArrayList<>();
-            allNeighbourRelationships.forEach(neighbours::add);
-            Collections.shuffle(neighbours,random);
-            boolean transitionMade = false;
-
-            for (Relationship rel: neighbours) {
-
-                String relType = rel.getType().toString();
-                System.out.println("RelType: " + relType);
-                Map<String, State> currentStateTransitions = currentState.getAllMoves();
-                System.out.println("Current State: " + currentState.getTransformedName());
-                //System.out.println("Current StateTransitions: " + currentStateTransitions.keySet());
-
-                if (currentStateTransitions.containsKey(relType) && !currentStateTransitions.get(relType).getName().isEmpty()) {
-                    currentNode = rel.getOtherNode(currentNode);
-                    regularExpressionRandomWalk.add(currentNode);
-                    currentState = currentState.getNextStateBySymbol(relType);
-                    transitionMade = true;
-                    break;
-                }
+            int[] acceptedTypes = dfa.acceptedTypes(currentState);
+            int[] degrees = new int[acceptedTypes.length];
+            long validRelationships = 0;
+            for (int k = 0; k < acceptedTypes.length; k++) {
+                degrees[k] = currentNode.getDegree(relationshipTypes[acceptedTypes[k]], Direction.BOTH);
+                validRelationships += degrees[k];
             }
 
-                if (!transitionMade) {
-                    break;
+            if (validRelationships == 0) {
+                break;
+            }
+
+            /// uniform choice among the valid relationships: first the type by its degree, then the position
+            long pick = random.nextLong(validRelationships);
+            int k = 0;
+            while (pick >= degrees[k]) {
+                pick -= degrees[k++];
+            }
+            Relationship rel = null;
+            try (ResourceIterable<Relationship> candidates = currentNode.getRelationships(Direction.BOTH, relationshipTypes[acceptedTypes[k]])) {
+                for (Relationship candidate : candidates) {
+                    rel = candidate;
+                    if (pick-- == 0) {
+                        break;
+                    }
                 }
+            }
+            if (rel == null) {
+                break;
+            }
+
+            if (tracer.traceEnabled && tracer.sample()) {
+                tracer.trace("RelType: " + relationshipTypes[acceptedTypes[k]].name() + ", Current State: " + currentState);
+            }
+            currentNode = rel.getOtherNode(currentNode);
+            regularExpressionRandomWalk.add(currentNode);
+            currentState = dfa.next(currentState, acceptedTypes[k]);
         }
 
-        return regularExpressionRandomWalk;
+        String[] walkIds = new String[regularExpressionRandomWalk.size()];
+        for (int i = 0; i < walkIds.length; i++) {
+            walkIds[i] = regularExpressionRandomWalk.get(i).getElementId();
+        }
+        return walkIds;
 
     }
 
     /**
-     * This method is to save all the walks generated in a text file
-     * @param walk List of nodes of a walk
+     * This method if to generate walks from a node over the in-memory projection
+     * Same walk as through the transaction, but every step only reads primitive arrays
+     *
+     * @param graph projection of the graph
+     * @param dfa compiled DFA of Regular Expression
+     * @param node dense id of the starting node
+     * @param walkLength Length of a walk
+     * @param random random generator of the calling worker
+     * @param tracer tracing of the procedure call
+     *
+     * @return walk i.e. dense ids of the nodes
      */
 
-    private void saveWalksInFile(List<Node> walk){
-        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(walkFileName, true)))) { // append = true
-            List<String> walkNodeNames = new ArrayList<>();
-            for (Node node : walk) {
-                String nodeName = node.getElementId();
-                walkNodeNames.add(nodeName);
+    static int[] RegularExpressionRandomWalks(GraphProjection graph, CompiledDfa dfa, int node, Long walkLength, SplittableRandom random,
+                                              Tracer tracer) {
+
+        int[] walk = new int[Math.max(1, Math.toIntExact(walkLength))];
+        walk[0] = node;
+        int length = 1;
+        int currentState = dfa.startState();
+        int currentNode = node;
+
+        while (length < walk.length) {
+
+            int[] acceptedTypes = dfa.acceptedTypes(currentState);
+            int validRelationships = 0;
+            for (int type : acceptedTypes) {
+                validRelationships += graph.lowerBound(currentNode, type + 1) - graph.lowerBound(currentNode, type);
+            }
+
+            if (validRelationships == 0) {
+                break;
+            }
+
+            int pick = random.nextInt(validRelationships);
+            for (int type : acceptedTypes) {
+                int first = graph.lowerBound(currentNode, type);
+                int count = graph.lowerBound(currentNode, type + 1) - first;
+                if (pick < count) {
+                    if (tracer.traceEnabled && tracer.sample()) {
+                        tracer.trace("RelType: " + dfa.typeName(type) + ", Current State: " + currentState);
+                    }
+                    currentNode = graph.target(first + pick);
+                    currentState = dfa.next(currentState, type);
+                    break;
+                }
+                pick -= count;
             }
-            writer.println(String.join(" ", walkNodeNames));
-        } catch (IOException e) {
-            log.error("Error writing walks to file: " + e.getMessage());
+            walk[length++] = currentNode;
         }
+
+        return Arrays.copyOf(walk, length);
     }
 
     /**
-     * This method is to save the generated embeddings in a file
-     * @param embeddings embeddings of nodes
+     * This method is to save the nodes and their types in a csv file, in one pass with one writer
+     * @param nodeIds element ids by dense id
+     * @param nodeTypes type of every node
+     * @param nodeTypesFileName path of the csv file
+     * @throws IOException if the file cannot be written
      */
 
-    private void saveEmbeddingsInFile(Map<String, double[]> embeddings) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(embeddingFileName, false))) {
-            for (Map.Entry<String, double[]> entry : embeddings.entrySet()) {
-                String nodeId = entry.getKey();
-                double[] vec   = entry.getValue();
-
-                // Build one space‑separated string of all coordinates
-                String joined = DoubleStream.of(vec)
-                        .mapToObj(Double::toString)
-                        .collect(Collectors.joining(" "));
-
-                // Write nodeId, one tab, then the joined vector, then newline
-                writer.print(nodeId);
-                writer.print("\t");
-                writer.print(joined);
-                writer.print("\n");
-            }
-            log.info("Wrote " + embeddings.size() + " embeddings to " + embeddingFileName);
-        } catch (IOException e) {
-            log.error("Error writing embeddings to file: " + e.getMessage(), e);
+    private void saveNodeTypesInFile(List<String> nodeIds, NodeTypeIndex nodeTypes, Path nodeTypesFileName) throws IOException {
+        int[] types = nodeTypes.nodeTypes();
+        List<String> typeNames = nodeTypes.typeNames();
+        try (BufferedWriter writer = Files.newBufferedWriter(nodeTypesFileName)) {
+            writer.write("nodeId,nodeType");
+            writer.newLine();
+            for (int node = 0; node < nodeIds.size(); node++) {
+                writer.write(nodeIds.get(node));
+                writer.write(',');
+                writer.write(typeNames.get(types[node]));
+                writer.newLine();
+            }
+            log.info("Wrote the types of " + nodeIds.size() + " nodes to " + nodeTypesFileName);
         }
     }
 
     /**
-     * This method is to create file and checks if already exists
-     * @param filePath path of a file
+     * This method is to save the generated embeddings in a file with the export format
+     * @param nodeIds element ids by dense id
+     * @param hsg trained model
+     * @param format export format
+     * @param precision export precision
+     * @param embeddingFileName path of the embedding files without extension
+     * @throws IOException if the file cannot be written
      */
 
-    private void createFile(String filePath) {
-        try {
-            File file = new File(filePath);
-            if (file.exists()) {
-                // Delete the file if it exists
-                file.delete();
-            }
-            // Create a new empty file
-            file.createNewFile();
-            log.info("Initialized new walks.txt file at: " + filePath);
-        } catch (IOException e) {
-            log.error("Error initializing walks.txt: " + e.getMessage());
-        }
+    private void saveEmbeddingsInFile(List<String> nodeIds, HeterogenousSkipGram hsg, ExportFormat format,
+                                      EmbeddingPrecision precision, String embeddingFileName) throws IOException {
+        long startTime = System.nanoTime();
+        Path file = format.write(embeddingFileName, nodeIds, hsg.inputEmbeddings, precision);
+        log.info(String.format("Wrote %d %s embeddings to %s (%d MB) in %d ms", nodeIds.size(), precision.name().toLowerCase(), file,
+                Files.size(file) / (1024 * 1024), (System.nanoTime() - startTime) / 1_000_000));
     }
 
-}
\ No newline at end of file
+}
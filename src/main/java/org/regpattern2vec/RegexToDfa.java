@@ -14,13 +14,16 @@ public class RegexToDfa {
     public String finalRegex;
     private Nodes root;
     public List<State> DStates;
+    public CompiledDfa compiledDfa; //flat transition table of DStates, null if the regex is incorrect
 
     public HashMap<Integer,HashMap<String,Integer>> transitions;
 
     private  Set<String> input; //set of inputs is used in input regex
     public List<State> stateNames = new ArrayList<>();
 
-    private static HashMap<Integer, String> symbolNum;
+    private HashMap<Integer, String> symbolNum; //leaf number to symbol, of this DFA only
+
+    private final Tracer tracer;
 
     /**
      * This method is to convert the Regular Expression to DFA trasitions
@@ -29,8 +32,20 @@ public class RegexToDfa {
      */
 
     public RegexToDfa(List<String> TypeList, String regex) {
+        this(TypeList, regex, Tracer.OFF);
+    }
 
-        System.out.println("Input Regex: " + regex);
+    /**
+     * This method is to convert the Regular Expression to DFA trasitions, the construction is traced at DEBUG
+     * @param TypeList List if Relation types
+     * @param regex Regular Expression
+     * @param tracer tracing of the procedure call
+     */
+
+    public RegexToDfa(List<String> TypeList, String regex, Tracer tracer) {
+
+        this.tracer = tracer;
+        tracer.debug("Input Regex: " + regex);
 
         //allocating
         DStates = new ArrayList<>();
@@ -55,7 +70,7 @@ public class RegexToDfa {
             if(!token.equals("(") && !token.equals(")") && !token.equals("{") && !token.equals("}")
                     && !token.equals("[") && !token.equals("]") && !token.equals("*") && !token.equals("+")
                         && !token.equals(".") && !token.equals("|") && !token.equals("^") && !token.matches("\\{\\d+,\\}")  && !TypeList.contains(token)) {
-                System.out.println("Incorrect Relationship Type in Given Regular Expression: "+token);
+                tracer.debug("Incorrect Relationship Type in Given Regular Expression: "+token);
                 return;
 
             }
@@ -63,12 +78,12 @@ public class RegexToDfa {
 
         /// giving the regex to SyntaxTree class constructor and creating the
         /// syntax tree of the regular expression in it
-        SyntaxTree st = new SyntaxTree(regex+".#", TypeList);
+        SyntaxTree st = new SyntaxTree(regex+".#", TypeList, tracer);
         finalRegex = st.getFinalRegex();
-        System.out.println("Final Regex: " + finalRegex);
-        System.out.println("Number of Leaves: "+ st.getFollowPos().length);
+        tracer.debug("Final Regex: " + finalRegex);
+        tracer.debug("Number of Leaves: "+ st.getFollowPos().length);
         getSymbols(finalRegex);
-        System.out.println("Input:" + input);
+        tracer.debug(() -> "Input:" + input);
         root = st.getRoot(); //root of the syntax tree
         followPos = st.getFollowPos(); //the followPos of the syntax tree
 
@@ -76,8 +91,7 @@ public class RegexToDfa {
         /// returning the start state of the resulted DFA
         State q0 = createDFA();
 
-        System.out.println("All transitions: ");
-        System.out.println("DStates: " + DStates.size());
+        tracer.debug("DStates: " + DStates.size());
 
         transformStateNames();
 
@@ -89,29 +103,35 @@ public class RegexToDfa {
                 if(state.getTransformedName() == DStates.size()-1){
                     state.setIsLastState();
                 }
-                System.out.println("Transformed State Name: " + state.getTransformedName());
                 //System.out.println("State Name: " + state.getName());
                 for (Map.Entry<String, State> entry : state.getAllMoves().entrySet()) {
                     if (!entry.getKey().equals("#")) {
                         transitions.computeIfAbsent(state.getTransformedName(), k -> new HashMap<>())
                                 .put(entry.getKey(), entry.getValue().getTransformedName());
-                        System.out.println("Key: " + entry.getKey() + ", Value: " + entry.getValue().getTransformedName());
                         //System.out.println("Key: " + entry.getKey() + ", Value: " + entry.getValue().getName());
                         //System.out.println(state.getAllMoves().entrySet());
                     }
                 }
                 if(state.isFirstState){
-                    System.out.println("First State: " + state.getTransformedName());
+                    tracer.debug("First State: " + state.getTransformedName());
                 }
                 if(state.isLastState){
-                    System.out.println("Last State: " + state.getTransformedName());
+                    tracer.debug("Last State: " + state.getTransformedName());
                 }
             }
         }
 
-        for(Map.Entry<Integer,HashMap<String,Integer>> entry: transitions.entrySet()) {
-            System.out.println(entry.getKey() + " -> " + entry.getValue());
-        }
+        /// one message for all transitions, built only when traced
+        tracer.debug(() -> {
+            StringBuilder all = new StringBuilder("All transitions:");
+            for (Map.Entry<Integer, HashMap<String, Integer>> entry : transitions.entrySet()) {
+                all.append(' ').append(entry.getKey()).append(" -> ").append(entry.getValue()).append(';');
+            }
+            return all.toString();
+        });
+
+        /// compiling the DFA to an integer transition table for the walkers
+        compiledDfa = new CompiledDfa(TypeList, DStates, q0);
     }
 
     private void getSymbols(String regex) {
@@ -144,74 +164,105 @@ public class RegexToDfa {
     }
 
     /**
-     *
+     * This method is the subset construction of the DFA
+     * Unmarked states are kept on a worklist and existing states are found by their position set in a hash map.
+     * Position sets and followpos are BitSets and the targets of a state are unions over its own positions,
+     * so the construction is linear in the size of the DFA (states x inputs) plus the followpos unions.
+     * The worklist is a stack, the states are created in the same order as by rescanning DStates for the last
+     * unmarked state.
      * @return DFA states
      */
 
     private State createDFA() {
         int id = 0;
-        Set<Integer> firstpos_n0 = root.getFirstPos();
-        State q0 = new State(id++);
-        q0.addAllToName(firstpos_n0);
-        if (q0.getName().contains(followPos.length)) {
-            q0.setAccept();
+        int leaves = followPos.length;
+
+        /// inputs by index, and followpos and the input index of every position, indexed by position number (from 1)
+        String[] inputs = input.toArray(new String[0]);
+        Map<String, Integer> inputIndex = new HashMap<>();
+        for (int a = 0; a < inputs.length; a++) {
+            inputIndex.put(inputs[a], a);
+        }
+        BitSet[] follow = new BitSet[leaves + 1];
+        int[] inputOf = new int[leaves + 1];
+        for (int p = 1; p <= leaves; p++) {
+            follow[p] = toBitSet(followPos[p - 1]);
+            inputOf[p] = inputIndex.get(symbolNum.get(p));
         }
+        BitSet empty = new BitSet();
+        State deadState = null; //the state with no positions, target of every absent input
+
+        BitSet start = toBitSet(root.getFirstPos());
+        State q0 = newState(id++, start, leaves);
         DStates.clear();
         DStates.add(q0);
         //System.out.println("Q0: " + q0.getName());
         stateNames.add(q0);
 
-        while (true) {
-            boolean exit = true;
-            State s = null;
-            for (State state : DStates) {
-                if (!state.getIsMarked()) {
-                    exit = false;
-                    s = state;
-                }
-            }
-            if (exit) {
-                break;
-            }
+        Map<BitSet, State> statesByName = new HashMap<>();
+        statesByName.put(start, q0);
+        Deque<BitSet> unmarked = new ArrayDeque<>();
+        unmarked.push(start);
 
-            if (s.getIsMarked()) {
-                continue;
-            }
+        while (!unmarked.isEmpty()) {
+            BitSet name = unmarked.pop();
+            State s = statesByName.get(name);
             s.setIsMarked(true); //mark the state
-            Set<Integer> name = s.getName();
-            for (String a : input) {
-                Set<Integer> U = new HashSet<>();
-                for (int p : name) {
-                    if (symbolNum.get(p).equals(a)) {
-                        U.addAll(followPos[p - 1]);
-                    }
-                }
-                boolean flag = false;
-                State tmp = null;
-                for (State state : DStates) {
-                    if (state.getName().equals(U)) {
-                        tmp = state;
-                        flag = true;
-                        break;
-                    }
+
+            /// one pass over the positions of the state gives the target of every input, absent inputs go to the empty state
+            BitSet[] targets = new BitSet[inputs.length];
+            for (int p = name.nextSetBit(0); p >= 0; p = name.nextSetBit(p + 1)) {
+                if (targets[inputOf[p]] == null) {
+                    targets[inputOf[p]] = new BitSet();
                 }
-                if (!flag) {
-                    State q = new State(id++);
-                    q.addAllToName(U);
-                    if (U.contains(followPos.length)) {
-                        q.setAccept();
+                targets[inputOf[p]].or(follow[p]);
+            }
+            for (int a = 0; a < inputs.length; a++) {
+                BitSet U = targets[a] == null ? empty : targets[a];
+                State tmp = U == empty && deadState != null ? deadState : statesByName.get(U);
+                if (tmp == null) {
+                    tmp = newState(id++, U, leaves);
+                    DStates.add(tmp);
+                    if(!tmp.getName().isEmpty()){stateNames.add(tmp);}
+                    statesByName.put(U, tmp);
+                    unmarked.push(U);
+                    if (U.isEmpty()) {
+                        deadState = tmp;
                     }
-                    DStates.add(q);
-                    if(!q.getName().isEmpty()){stateNames.add(q);}
-                    tmp = q;
                 }
-                s.addMove(a, tmp);
+                s.addMove(inputs[a], tmp);
             }
         }
 
         return q0;
     }
 
+    /**
+     * @param id id of the state
+     * @param name positions of the state
+     * @param leaves number of positions, the last one is the end marker #
+     * @return new unmarked state
+     */
+
+    private static State newState(int id, BitSet name, int leaves) {
+        State q = new State(id);
+        for (int p = name.nextSetBit(0); p >= 0; p = name.nextSetBit(p + 1)) {
+            q.addToName(p);
+        }
+        if (name.get(leaves)) {
+            q.setAccept();
+        }
+        return q;
+    }
+
+    private static BitSet toBitSet(Set<Integer> positions) {
+        BitSet bits = new BitSet();
+        for (int p : positions) {
+            bits.set(p);
+        }
+        return bits;
+    }
+
     public HashMap<Set<Integer>,Map.Entry<String, State>> getAllTransitions() {
 
         HashMap<Set<Integer>,Map.Entry<String, State>> allTransitions = new HashMap<>();
@@ -0,0 +1,53 @@
+package org.regpattern2vec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is the state of one procedure call: options, output files, nodes, walks and the trained model.
+ * Every call creates its own context and nothing of it is static, so concurrent calls on one database
+ * share no collections and no run sees the nodes or walks of an earlier one.
+ */
+
+public class RunContext {
+
+    final Tracer tracer;
+    final RunFiles files;
+    final EmbeddingPrecision precision;
+    final ExportFormat format;
+    /// seed of the walks and of the training, drawn if the call gave none
+    final long seed;
+
+    /// element ids by dense id, the order of the walk corpus and of the model
+    final List<String> nodeIds = new ArrayList<>();
+    final NodeTypeIndex nodeTypes = new NodeTypeIndex();
+
+    WalkCorpus corpus;
+    HeterogenousSkipGram model;
+
+    /**
+     * This is a constructor
+     * @param tracer tracing of the call
+     * @param files output directory of the call
+     * @param precision precision of the npy and raw embedding exports
+     * @param format file format of the embedding export
+     * @param seed seed of the walks and of the training
+     */
+
+    public RunContext(Tracer tracer, RunFiles files, EmbeddingPrecision precision, ExportFormat format, long seed) {
+        this.tracer = tracer;
+        this.files = files;
+        this.precision = precision;
+        this.format = format;
+        this.seed = seed;
+    }
+
+    public List<String> nodeIds() {
+        return nodeIds;
+    }
+
+    public HeterogenousSkipGram model() {
+        return model;
+    }
+}
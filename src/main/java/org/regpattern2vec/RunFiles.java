@@ -0,0 +1,212 @@
+package org.regpattern2vec;
+
+import org.neo4j.configuration.Config;
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is the output directory of one procedure call.
+ * Every call writes into its own directory <outputDirectory>/<runId> under the import directory of the database
+ * (server.directories.import in neo4j.conf), so concurrent calls never share a file. The run id is the start time
+ * followed by a random suffix, e.g. 20250412-101530-3f9c2a1b.
+ * A run writes a completion marker when all its files are written. Only completed runs are ever pruned, so a run
+ * still in progress, e.g. a concurrent call, never loses its directory.
+ */
+
+public class RunFiles {
+
+    static final String DEFAULT_OUTPUT_DIRECTORY = "regpattern2vec";
+    static final String WALK_FILE_NAME = "walks.bin";
+    /// Embedding files are this name followed by the extension of the export format
+    static final String EMBEDDING_FILE_NAME = "embeddings";
+    static final String NODE_TYPES_FILE_NAME = "nodeTypes.csv";
+    /// Written last, a run directory without it is in progress or failed
+    static final String COMPLETED_FILE_NAME = "completed";
+
+    private static final DateTimeFormatter RUN_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    /// Only directories named like a run id are ever deleted, ids sort by their start time
+    private static final Pattern RUN_ID = Pattern.compile("\\d{8}-\\d{6}-[0-9a-f]{8}");
+
+    private final Path root;
+    private final String runId;
+    private final Path directory;
+
+    private RunFiles(Path root, String runId, Path directory) {
+        this.root = root;
+        this.runId = runId;
+        this.directory = directory;
+    }
+
+    /**
+     * This method is to create the directory of a new run
+     * @param gdbs database the procedure runs in, its import directory is the root of all outputs
+     * @param outputDirectory directory of the runs relative to the import directory, empty for regpattern2vec
+     * @return files of the run
+     * @throws IOException if the directory cannot be created
+     */
+
+    public static RunFiles create(GraphDatabaseService gdbs, String outputDirectory) throws IOException {
+        return create(importDirectory(gdbs), outputDirectory);
+    }
+
+    /**
+     * @param root directory all outputs are confined to
+     * @param outputDirectory directory of the runs relative to root, empty for regpattern2vec
+     * @return files of the run
+     * @throws IOException if the directory cannot be created
+     */
+
+    static RunFiles create(Path root, String outputDirectory) throws IOException {
+        Path normalizedRoot = root.toAbsolutePath().normalize();
+        Path runs = resolve(normalizedRoot, outputDirectory == null || outputDirectory.isEmpty() ? DEFAULT_OUTPUT_DIRECTORY : outputDirectory);
+        String runId = LocalDateTime.now().format(RUN_TIME) + "-" + UUID.randomUUID().toString().substring(0, 8);
+        Path directory = Files.createDirectories(runs.resolve(runId));
+        return new RunFiles(normalizedRoot, runId, directory);
+    }
+
+    /**
+     * This method is to find the import directory of the database
+     * @param gdbs database the procedure runs in
+     * @return import directory
+     * @throws IllegalStateException if the database has no import directory, nothing is written outside of it
+     */
+
+    static Path importDirectory(GraphDatabaseService gdbs) {
+        if (gdbs instanceof GraphDatabaseAPI) {
+            Config config = ((GraphDatabaseAPI) gdbs).getDependencyResolver().resolveDependency(Config.class);
+            Path importDirectory = config.get(GraphDatabaseSettings.load_csv_file_url_root);
+            if (importDirectory != null) {
+                return importDirectory;
+            }
+        }
+        throw new IllegalStateException("RegPattern2Vec writes its files to the import directory, but none is configured, "
+                + "set server.directories.import in neo4j.conf");
+    }
+
+    /**
+     * @param root directory the path has to stay in
+     * @param path path relative to root
+     * @return resolved path
+     */
+
+    private static Path resolve(Path root, String path) {
+        Path resolved = root.resolve(path).normalize();
+        if (!resolved.startsWith(root)) {
+            throw new IllegalArgumentException("Path " + path + " is outside of the import directory " + root);
+        }
+        return resolved;
+    }
+
+    /**
+     * This method is to resolve a path given by the user, e.g. a walk corpus shared between runs
+     * @param path path relative to the import directory
+     * @return resolved path, always inside the import directory
+     */
+
+    public Path resolveUserPath(String path) {
+        return resolve(root, path);
+    }
+
+    /**
+     * This method is to mark the run as completed, after all its files are written
+     * @throws IOException if the marker cannot be written
+     */
+
+    public void complete() throws IOException {
+        Files.writeString(directory.resolve(COMPLETED_FILE_NAME), runId + "\n");
+    }
+
+    /**
+     * This method is to delete the oldest completed run directories next to this run, so that the newest keepRuns
+     * completed ones remain. Runs without the completion marker are never touched, and directories removed by a
+     * concurrent call at the same time are skipped
+     * @param keepRuns number of completed runs to keep, 0 or less keeps all of them
+     * @return number of deleted run directories
+     * @throws IOException if a directory cannot be deleted
+     */
+
+    public int deleteOldRuns(long keepRuns) throws IOException {
+        if (keepRuns <= 0) {
+            return 0;
+        }
+        List<Path> runs;
+        try (Stream<Path> children = Files.list(directory.getParent())) {
+            runs = children.filter(path -> RUN_ID.matcher(path.getFileName().toString()).matches())
+                    .filter(path -> Files.exists(path.resolve(COMPLETED_FILE_NAME)))
+                    .sorted(Comparator.reverseOrder())
+                    .collect(Collectors.toList());
+        }
+        int deleted = 0;
+        for (Path run : runs.subList((int) Math.min(runs.size(), keepRuns), runs.size())) {
+            // The marker goes first, so that no other call counts the run any more
+            if (Files.deleteIfExists(run.resolve(COMPLETED_FILE_NAME)) && deleteDirectory(run)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * @param directory directory to delete with all its files
+     * @return false if the directory was already removed
+     * @throws IOException if a file cannot be deleted
+     */
+
+    private static boolean deleteDirectory(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof NoSuchFileException) {
+                return false;
+            }
+            throw e;
+        }
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        return true;
+    }
+
+    public String runId() {
+        return runId;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public Path walks() {
+        return directory.resolve(WALK_FILE_NAME);
+    }
+
+    /**
+     * @return path of the embedding files without the extension of the export format
+     */
+
+    public String embeddings() {
+        return directory.resolve(EMBEDDING_FILE_NAME).toString();
+    }
+
+    public Path nodeTypes() {
+        return directory.resolve(NODE_TYPES_FILE_NAME);
+    }
+}
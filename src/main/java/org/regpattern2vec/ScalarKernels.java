@@ -0,0 +1,40 @@
+package org.regpattern2vec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is the scalar fallback of the kernels, plain loops the JIT may still unroll.
+ */
+
+public class ScalarKernels extends VectorKernels {
+
+    @Override
+    public float dot(float[] a, float[] b, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, float[] y, int length) {
+        for (int i = 0; i < length; i++) {
+            y[i] += alpha * x[i];
+        }
+    }
+
+    @Override
+    public void axpyInto(float alpha, float[] x, ByteBuffer y, int byteOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            int offset = byteOffset + 4 * i;
+            y.putFloat(offset, y.getFloat(offset) + alpha * x[i]);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,74 @@
+package org.regpattern2vec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is the SIMD implementation of the kernels with the Java Vector API, in the widest species of the
+ * CPU (e.g. 16 floats with AVX-512). The tail shorter than a vector is done by the scalar loop.
+ * Only loaded by VectorKernels when the JVM runs with --add-modules jdk.incubator.vector.
+ */
+
+public class SimdKernels extends VectorKernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public float dot(float[] a, float[] b, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            sum = va.fma(vb, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    @Override
+    public void axpy(float alpha, float[] x, float[] y, int length) {
+        FloatVector va = FloatVector.broadcast(SPECIES, alpha);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector vx = FloatVector.fromArray(SPECIES, x, i);
+            FloatVector vy = FloatVector.fromArray(SPECIES, y, i);
+            vx.fma(va, vy).intoArray(y, i);
+        }
+        for (; i < length; i++) {
+            y[i] += alpha * x[i];
+        }
+    }
+
+    @Override
+    public void axpyInto(float alpha, float[] x, ByteBuffer y, int byteOffset, int length) {
+        FloatVector va = FloatVector.broadcast(SPECIES, alpha);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            int offset = byteOffset + 4 * i;
+            FloatVector vx = FloatVector.fromArray(SPECIES, x, i);
+            FloatVector vy = FloatVector.fromByteBuffer(SPECIES, y, offset, ByteOrder.nativeOrder());
+            vx.fma(va, vy).intoByteBuffer(y, offset, ByteOrder.nativeOrder());
+        }
+        for (; i < length; i++) {
+            int offset = byteOffset + 4 * i;
+            y.putFloat(offset, y.getFloat(offset) + alpha * x[i]);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "simd " + SPECIES.vectorBitSize() + " bit";
+    }
+}
@@ -20,9 +20,13 @@ public class SyntaxTree {
 
 
     public SyntaxTree(String regex, List<String> TypeList) {
+        this(regex, TypeList, Tracer.OFF);
+    }
+
+    public SyntaxTree(String regex, List<String> TypeList, Tracer tracer) {
 
         this.TypeList = TypeList;
-        bt = new BinaryTree();
+        bt = new BinaryTree(tracer);
 
         /*
           generates the binary tree of the syntax tree
@@ -34,7 +38,7 @@ public class SyntaxTree {
         for (int i = 0; i < numOfLeafs; i++) {
             followPos[i] = new HashSet<>();
         }
-        //bt.printInorder(root);
+        tracer.debug(() -> "Syntax tree in order: " + bt.printInorder(root, new StringBuilder()));
         generateNullable(root);
         generateFirstposLastPos(root);
         generateFollowPos(root);
@@ -0,0 +1,103 @@
+package org.regpattern2vec;
+
+import org.neo4j.logging.Log;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is the leveled tracing of a procedure call, written to the Neo4j log instead of stdout.
+ * DEBUG traces one message per phase (e.g. the DFA of the regular expression), TRACE also traces events of the
+ * hot loops (e.g. every step of a walk), of which only a sampled fraction is written.
+ * The levels are final fields, so a disabled check is a field read and the message is never built:
+ *     if (tracer.traceEnabled && tracer.sample()) tracer.trace("Current State: " + state);
+ */
+
+public class Tracer {
+
+    public enum Level {
+        OFF,
+        DEBUG,
+        TRACE;
+
+        /**
+         * @param value name of the level, case-insensitive
+         * @return the level
+         */
+
+        public static Level parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown verbose level: " + value + ", expected off, debug or trace");
+            }
+        }
+    }
+
+    /// Tracer of code running outside a procedure call, e.g. the unit tests
+    public static final Tracer OFF = new Tracer(null, Level.OFF, 0);
+
+    public final boolean debugEnabled;
+    public final boolean traceEnabled;
+
+    private final Log log;
+    private final double sampleRate;
+
+    /**
+     * This is a constructor
+     * @param log log of the procedure
+     * @param level highest level that is written
+     * @param sampleRate fraction of the TRACE events that is written, between 0 and 1
+     */
+
+    public Tracer(Log log, Level level, double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Trace sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.log = log;
+        this.debugEnabled = log != null && level.compareTo(Level.DEBUG) >= 0;
+        this.traceEnabled = log != null && level.compareTo(Level.TRACE) >= 0;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * This method is to decide if a TRACE event is written, without shared state between the threads
+     * @return true for about sampleRate of the calls
+     */
+
+    public boolean sample() {
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * The message goes to the info level of the log, the user asked for it with the verbose parameter
+     * @param message message of a phase
+     */
+
+    public void debug(String message) {
+        if (debugEnabled) {
+            log.info("[debug] " + message);
+        }
+    }
+
+    /**
+     * @param message built only if DEBUG is enabled
+     */
+
+    public void debug(Supplier<String> message) {
+        if (debugEnabled) {
+            log.info("[debug] " + message.get());
+        }
+    }
+
+    /**
+     * @param message message of a sampled event, check traceEnabled before building it
+     */
+
+    public void trace(String message) {
+        if (traceEnabled) {
+            log.info("[trace] " + message);
+        }
+    }
+}
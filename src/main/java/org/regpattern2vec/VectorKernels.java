@@ -0,0 +1,120 @@
+package org.regpattern2vec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is the kernel layer of the Skip-Gram updates: dot product and axpy over float vectors, and the
+ * sigmoid from a precomputed table like the expTable of word2vec.
+ * INSTANCE uses the SIMD lanes of the Java Vector API if the JVM runs with --add-modules jdk.incubator.vector,
+ * the scalar loops otherwise. Both give the same results up to the order of the float additions.
+ */
+
+public abstract class VectorKernels {
+
+    /// Sigmoid is tabulated on (-MAX_EXP, MAX_EXP), beyond that it is 0 or 1 as in word2vec
+    static final int SIGMOID_TABLE_SIZE = 1000;
+    static final float MAX_EXP = 6f;
+
+    /// one entry more than the size, x just below MAX_EXP may round to the last index
+    private static final float[] SIGMOID_TABLE = new float[SIGMOID_TABLE_SIZE + 1];
+    private static final float[] LOG_SIGMOID_TABLE = new float[SIGMOID_TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= SIGMOID_TABLE_SIZE; i++) {
+            double x = (i / (double) SIGMOID_TABLE_SIZE * 2 - 1) * MAX_EXP;
+            SIGMOID_TABLE[i] = (float) (1.0 / (1.0 + Math.exp(-x)));
+            LOG_SIGMOID_TABLE[i] = (float) -Math.log1p(Math.exp(-x));
+        }
+    }
+
+    public static final VectorKernels INSTANCE = select();
+
+    /**
+     * @param a first vector
+     * @param b second vector
+     * @param length number of coordinates
+     * @return sum of a[i] * b[i]
+     */
+
+    public abstract float dot(float[] a, float[] b, int length);
+
+    /**
+     * This method is to add a scaled vector to another one, y = y + alpha * x
+     * @param alpha scale of x
+     * @param x vector to add
+     * @param y vector that is updated
+     * @param length number of coordinates
+     */
+
+    public abstract void axpy(float alpha, float[] x, float[] y, int length);
+
+    /**
+     * This method is to add a scaled vector to floats of a buffer in place, y = y + alpha * x
+     * Every lane is read, added and written on its own, there is no write-back of a stale copy of the whole vector
+     * @param alpha scale of x
+     * @param x vector to add
+     * @param y buffer in native byte order that is updated
+     * @param byteOffset byte offset of the first float of y
+     * @param length number of coordinates
+     */
+
+    public abstract void axpyInto(float alpha, float[] x, ByteBuffer y, int byteOffset, int length);
+
+    /**
+     * @return name of the implementation, for the log
+     */
+
+    public abstract String name();
+
+    /**
+     * @param x dot product of two vectors
+     * @return sigmoid of x from the table, 0 or 1 outside of (-MAX_EXP, MAX_EXP)
+     */
+
+    public static float sigmoid(float x) {
+        if (x >= MAX_EXP) {
+            return 1f;
+        }
+        if (x <= -MAX_EXP) {
+            return 0f;
+        }
+        return SIGMOID_TABLE[(int) ((x + MAX_EXP) * (SIGMOID_TABLE_SIZE / MAX_EXP / 2))];
+    }
+
+    /**
+     * @param x dot product of two vectors
+     * @return log of the sigmoid of x from the table, for the loss; 0 above MAX_EXP and about x below -MAX_EXP
+     */
+
+    public static float logSigmoid(float x) {
+        if (x >= MAX_EXP) {
+            return 0f;
+        }
+        if (x <= -MAX_EXP) {
+            return x;
+        }
+        return LOG_SIGMOID_TABLE[(int) ((x + MAX_EXP) * (SIGMOID_TABLE_SIZE / MAX_EXP / 2))];
+    }
+
+    /**
+     * This method is to pick the implementation once, the call sites then only see one class
+     * The SIMD class is only loaded if the incubator module is in the boot layer
+     * @return SIMD kernels if the Vector API is available, scalar kernels otherwise
+     */
+
+    private static VectorKernels select() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                VectorKernels simd = new SimdKernels();
+                // links the buffer methods of the Vector API, which not every JDK has
+                simd.axpyInto(1f, new float[1], ByteBuffer.allocateDirect(4).order(ByteOrder.nativeOrder()), 0, 1);
+                return simd;
+            } catch (LinkageError e) {
+                // the module is there but the API of this JDK differs, the scalar loops still work
+            }
+        }
+        return new ScalarKernels();
+    }
+}
@@ -0,0 +1,383 @@
+package org.regpattern2vec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Sainath_Talakanti
+ * This code file is the binary walk corpus, written once by the walk generation and memory-mapped by the trainer.
+ * Layout (little-endian):
+ *   header   magic, version, node count, walk count, longest walk, parameters hash (int each), offset of the ids and of the index (long each)
+ *   walks    per walk a varint length, then the dense node ids as zigzag varints of the delta to the previous id
+ *   ids      per node the element id as varint byte length and UTF-8 bytes, in dense id order
+ *   index    walk count + 1 longs, the file offset of every walk and the end of the walks
+ * The element ids are kept in the file, so a corpus can be reused for training without regenerating the walks.
+ * The parameters hash identifies the walk parameters the corpus was generated with. The writer writes to a temporary
+ * file that is moved to the path only when the corpus is complete, so a failed generation never leaves a corpus behind.
+ */
+
+public class WalkCorpus {
+
+    static final int MAGIC = 0x52505743; // "RPWC"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 40;
+    /// A mapping is int indexed, the walks are mapped in segments of at most this size that never split a walk
+    static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final List<String> nodeIds;
+    private final int walkCount;
+    private final LongBuffer index;
+    private final MappedByteBuffer[] segments;
+    private final long[] segmentStart;
+    private final int[] segmentFirstWalk;
+    private final int maxWalkLength;
+    private final int parametersHash;
+
+    private WalkCorpus(List<String> nodeIds, int walkCount, LongBuffer index, MappedByteBuffer[] segments,
+                       long[] segmentStart, int[] segmentFirstWalk, int maxWalkLength, int parametersHash) {
+        this.nodeIds = nodeIds;
+        this.walkCount = walkCount;
+        this.index = index;
+        this.segments = segments;
+        this.segmentStart = segmentStart;
+        this.segmentFirstWalk = segmentFirstWalk;
+        this.maxWalkLength = maxWalkLength;
+        this.parametersHash = parametersHash;
+    }
+
+    /**
+     * This method is to memory-map a corpus, nothing but the element ids is copied to the heap
+     * @param path corpus file
+     * @return mapped corpus
+     * @throws IOException if the file is not a walk corpus
+     */
+
+    public static WalkCorpus open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Not a walk corpus: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported walk corpus version " + version + ": " + path);
+            }
+            int nodeCount = header.getInt();
+            int walkCount = header.getInt();
+            int maxWalkLength = header.getInt();
+            int parametersHash = header.getInt();
+            long idsOffset = header.getLong();
+            long indexOffset = header.getLong();
+            long indexBytes = 8L * (walkCount + 1);
+            if (indexOffset + indexBytes > channel.size() || indexBytes > Integer.MAX_VALUE) {
+                throw new IOException("Truncated walk corpus: " + path);
+            }
+
+            LongBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, indexBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+
+            MappedByteBuffer ids = channel.map(FileChannel.MapMode.READ_ONLY, idsOffset, indexOffset - idsOffset);
+            List<String> nodeIds = new ArrayList<>(nodeCount);
+            for (int n = 0; n < nodeCount; n++) {
+                byte[] bytes = new byte[readVarint(ids)];
+                ids.get(bytes);
+                nodeIds.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+
+            /// walk aligned segments, a walk is found by a binary search over the first walk of every segment
+            List<MappedByteBuffer> segments = new ArrayList<>();
+            List<Long> starts = new ArrayList<>();
+            List<Integer> firstWalks = new ArrayList<>();
+            int first = 0;
+            while (first < walkCount) {
+                long start = index.get(first);
+                int last = first + 1;
+                while (last < walkCount && index.get(last + 1) - start <= MAX_SEGMENT_BYTES) {
+                    last++;
+                }
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, index.get(last) - start));
+                starts.add(start);
+                firstWalks.add(first);
+                first = last;
+            }
+
+            return new WalkCorpus(nodeIds, walkCount, index, segments.toArray(new MappedByteBuffer[0]),
+                    starts.stream().mapToLong(Long::longValue).toArray(),
+                    firstWalks.stream().mapToInt(Integer::intValue).toArray(), maxWalkLength, parametersHash);
+        }
+    }
+
+    /**
+     * @return element ids by dense id, in the order the corpus was written with
+     */
+
+    public List<String> nodeIds() {
+        return nodeIds;
+    }
+
+    public int walkCount() {
+        return walkCount;
+    }
+
+    /**
+     * @return hash of the walk parameters the corpus was written with, 0 if the writer was given none
+     */
+
+    public int parametersHash() {
+        return parametersHash;
+    }
+
+    /**
+     * @return length of the longest walk, a buffer of this size fits every walk
+     */
+
+    public int maxWalkLength() {
+        return maxWalkLength;
+    }
+
+    /**
+     * This method is to decode one walk, safe to call from several threads
+     * @param walk index of the walk
+     * @param buffer receives the dense node ids, at least maxWalkLength long
+     * @return length of the walk
+     */
+
+    public int walk(int walk, int[] buffer) {
+        int segment = Arrays.binarySearch(segmentFirstWalk, walk);
+        if (segment < 0) {
+            segment = -segment - 2;
+        }
+        ByteBuffer data = segments[segment];
+        int[] position = {(int) (index.get(walk) - segmentStart[segment])};
+        int length = readVarint(data, position);
+        int node = 0;
+        for (int i = 0; i < length; i++) {
+            int zigzag = readVarint(data, position);
+            node += (zigzag >>> 1) ^ -(zigzag & 1);
+            buffer[i] = node;
+        }
+        return length;
+    }
+
+    /**
+     * @param walk index of the walk
+     * @return decoded walk on the heap
+     */
+
+    public int[] walk(int walk) {
+        int[] buffer = new int[maxWalkLength];
+        return Arrays.copyOf(buffer, walk(walk, buffer));
+    }
+
+    private static int readVarint(ByteBuffer data) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /// absolute reads only, so the shared mapping has no position to race on
+    private static int readVarint(ByteBuffer data, int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data.get(position[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * This code is the writer of a corpus, one open channel and one direct buffer for all walks
+     * The walks go to a temporary file next to the path, close() completes it and moves it to the path,
+     * abort() deletes it
+     */
+
+    public static class Writer implements Closeable {
+
+        private static final int BUFFER_BYTES = 1 << 20;
+
+        private final Path path;
+        private final Path temporary;
+        private final FileChannel channel;
+        private final List<String> nodeIds;
+        private final int parametersHash;
+        private boolean closed = false;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private long[] offsets = new long[1024];
+        private int walkCount = 0;
+        private int maxWalkLength = 0;
+        private long position = HEADER_BYTES;
+
+        /**
+         * This is a constructor, the file is replaced when the corpus is complete
+         * @param path corpus file
+         * @param nodeIds element ids by dense id
+         * @throws IOException
+         */
+
+        public Writer(Path path, List<String> nodeIds) throws IOException {
+            this(path, nodeIds, 0);
+        }
+
+        /**
+         * This is a constructor, the file is replaced when the corpus is complete
+         * @param path corpus file
+         * @param nodeIds element ids by dense id
+         * @param parametersHash hash of the walk parameters, checked before the corpus is reused
+         * @throws IOException
+         */
+
+        public Writer(Path path, List<String> nodeIds, int parametersHash) throws IOException {
+            Path parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            this.path = path;
+            this.temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+            this.channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.nodeIds = nodeIds;
+            this.parametersHash = parametersHash;
+            channel.position(HEADER_BYTES);
+        }
+
+        /**
+         * This method is to append one walk
+         * @param walk dense node ids
+         * @throws IOException
+         */
+
+        public void add(int[] walk) throws IOException {
+            ensure(5L * (walk.length + 1));
+            if (walkCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[walkCount++] = position + buffer.position();
+            maxWalkLength = Math.max(maxWalkLength, walk.length);
+
+            writeVarint(walk.length);
+            int previous = 0;
+            for (int node : walk) {
+                int delta = node - previous;
+                writeVarint((delta << 1) ^ (delta >> 31));
+                previous = node;
+            }
+        }
+
+        public int walkCount() {
+            return walkCount;
+        }
+
+        /**
+         * This method is to drop the corpus after a failed generation, the path is left as it was
+         * @throws IOException if the temporary file cannot be deleted
+         */
+
+        public void abort() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        /**
+         * This method is to write the ids, the index and the header, and to move the complete file to the path
+         * Does nothing after abort()
+         * @throws IOException
+         */
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            boolean complete = false;
+            try {
+                long walksEnd = position + buffer.position();
+                long idsOffset = walksEnd;
+                for (String nodeId : nodeIds) {
+                    byte[] bytes = nodeId.getBytes(StandardCharsets.UTF_8);
+                    ensure(5L + bytes.length);
+                    writeVarint(bytes.length);
+                    buffer.put(bytes);
+                }
+                long indexOffset = position + buffer.position();
+                for (int w = 0; w <= walkCount; w++) {
+                    ensure(8);
+                    buffer.order(ByteOrder.LITTLE_ENDIAN).putLong(w < walkCount ? offsets[w] : walksEnd);
+                }
+                flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(nodeIds.size()).putInt(walkCount)
+                        .putInt(maxWalkLength).putInt(parametersHash).putLong(idsOffset).putLong(indexOffset).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.close();
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                complete = true;
+            } finally {
+                closed = true;
+                if (!complete) {
+                    channel.close();
+                    Files.deleteIfExists(temporary);
+                }
+            }
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        /// flushes the buffer if the next record may not fit, grows it for records larger than the buffer
+        private void ensure(long bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            flush();
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocateDirect(Math.toIntExact(bytes));
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.regpattern2vec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+public class AliasSamplerTest {
+
+    @Test
+    void testSamplesFollowWeights() {
+        int[] values = {10, 20, 30, 40};
+        long[] counts = {1, 16, 81, 0};
+        AliasSampler sampler = AliasSampler.fromCounts(values, counts, 0.75);
+
+        // weights 1, 8, 27 and 0 for the node that never occurs in a walk
+        int draws = 360_000;
+        int[] hits = new int[4];
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < draws; i++) {
+            hits[sampler.sample(random) / 10 - 1]++;
+        }
+        assertEquals(1.0 / 36, hits[0] / (double) draws, 0.003);
+        assertEquals(8.0 / 36, hits[1] / (double) draws, 0.005);
+        assertEquals(27.0 / 36, hits[2] / (double) draws, 0.005);
+        assertEquals(0, hits[3]);
+    }
+
+    @Test
+    void testUniformWithoutCounts() {
+        AliasSampler sampler = AliasSampler.fromCounts(new int[]{1, 2}, new long[]{0, 0}, 0.75);
+        int ones = 0;
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < 10_000; i++) {
+            if (sampler.sample(random) == 1) {
+                ones++;
+            }
+        }
+        assertEquals(0.5, ones / 10_000.0, 0.02);
+    }
+}
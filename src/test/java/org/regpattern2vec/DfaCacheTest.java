@@ -0,0 +1,50 @@
+package org.regpattern2vec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class DfaCacheTest {
+
+    @Test
+    void testKeyedByPatternAndCatalog() {
+        DfaCache cache = new DfaCache(4);
+        List<String> types = List.of("R1", "R2");
+
+        CompiledDfa first = cache.get("(R1)*(R2)", types, Tracer.OFF);
+        assertSame(first, cache.get("(R1)*(R2)", List.of("R1", "R2"), Tracer.OFF));
+        assertEquals(1, cache.hits());
+
+        // A changed catalog compiles again, the type ids differ
+        CompiledDfa grown = cache.get("(R1)*(R2)", List.of("R0", "R1", "R2"), Tracer.OFF);
+        assertNotSame(first, grown);
+        assertEquals(3, grown.numTypes());
+        assertEquals(2, cache.misses());
+
+        // Incorrect patterns are not cached
+        assertNull(cache.get("(R3)", types, Tracer.OFF));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        DfaCache cache = new DfaCache(2);
+        List<String> types = List.of("R1", "R2");
+
+        CompiledDfa a = cache.get("(R1)*(R2)", types, Tracer.OFF);
+        cache.get("(R2)*(R1)", types, Tracer.OFF);
+        cache.get("(R1)*(R2)", types, Tracer.OFF);   // a is now the most recent
+        cache.get("(R1)(R2)", types, Tracer.OFF);    // evicts (R2)*(R1)
+
+        assertEquals(2, cache.size());
+        assertSame(a, cache.get("(R1)*(R2)", types, Tracer.OFF));
+        long misses = cache.misses();
+        cache.get("(R2)*(R1)", types, Tracer.OFF);
+        assertEquals(misses + 1, cache.misses());
+    }
+}
@@ -0,0 +1,124 @@
+package org.regpattern2vec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.logging.NullLog;
+
+public class EmbeddingPrecisionTest {
+
+    @Test
+    void testHalfConversion() {
+        assertEquals((short) 0x3C00, EmbeddingPrecision.toHalf(1.0f));
+        assertEquals((short) 0xC000, EmbeddingPrecision.toHalf(-2.0f));
+        assertEquals((short) 0x7BFF, EmbeddingPrecision.toHalf(65504f));
+        assertEquals((short) 0x7C00, EmbeddingPrecision.toHalf(1e6f));
+        assertEquals((short) 0x2E66, EmbeddingPrecision.toHalf(0.1f));
+        assertEquals((short) 0x0400, EmbeddingPrecision.toHalf(6.1035156e-5f));
+        assertEquals((short) 0x0001, EmbeddingPrecision.toHalf(5.9604645e-8f));
+
+        // Every finite half value survives a round trip through float
+        for (int bits = 0; bits < 0x7C00; bits++) {
+            float value = EmbeddingPrecision.fromHalf((short) bits);
+            assertEquals((short) bits, EmbeddingPrecision.toHalf(value));
+        }
+    }
+
+    @Test
+    void testRoundTripError() {
+        Random random = new Random(7);
+        float[] vec = new float[128];
+        for (int i = 0; i < vec.length; i++) {
+            vec[i] = (random.nextFloat() - 0.5f) * 4f;
+        }
+
+        for (EmbeddingPrecision precision : EmbeddingPrecision.values()) {
+            ByteBuffer buffer = ByteBuffer.allocate(precision.bytesPerVector(vec.length));
+            precision.encode(vec, buffer);
+            assertEquals(0, buffer.remaining());
+            buffer.flip();
+            float[] decoded = new float[vec.length];
+            precision.decode(buffer, decoded);
+
+            float max = 0f;
+            for (float value : vec) {
+                max = Math.max(max, Math.abs(value));
+            }
+            for (int i = 0; i < vec.length; i++) {
+                float error = Math.abs(vec[i] - decoded[i]);
+                switch (precision) {
+                    case FLOAT32:
+                        assertEquals(0f, error, 0f);
+                        break;
+                    case FLOAT16:
+                        assertTrue(error <= Math.abs(vec[i]) / 2048f + 1e-7f);
+                        break;
+                    case INT8:
+                        assertTrue(error <= max / 127f / 2f + 1e-6f);
+                        break;
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCosineOfTrainedEmbeddings() throws IOException {
+        Path path = Files.createTempFile("walks", ".bin");
+        try {
+            List<String> nodeIds = new ArrayList<>();
+            for (int n = 0; n < 100; n++) {
+                nodeIds.add("n" + n);
+            }
+            Random random = new Random(11);
+            try (WalkCorpus.Writer writer = new WalkCorpus.Writer(path, nodeIds)) {
+                for (int w = 0; w < 500; w++) {
+                    int[] walk = new int[10];
+                    for (int i = 0; i < walk.length; i++) {
+                        walk[i] = random.nextInt(nodeIds.size());
+                    }
+                    writer.add(walk);
+                }
+            }
+            HeterogenousSkipGram model = new HeterogenousSkipGram(null, NullLog.getInstance(), 128L, 3L, 5L, 0.025, 0.75, 5L, 0.0, 1L,
+                    3L, nodeIds, new int[nodeIds.size()], List.of(":A"), WalkCorpus.open(path));
+
+            // Mean and minimum cosine similarity of the decoded vectors to the float32 ones
+            for (EmbeddingPrecision precision : EmbeddingPrecision.values()) {
+                ByteBuffer buffer = ByteBuffer.allocate(precision.bytesPerVector(128));
+                float[] decoded = new float[128];
+                double cosineSum = 0;
+                double minCosine = 1;
+                for (int node = 0; node < nodeIds.size(); node++) {
+                    float[] vec = model.getEmbedding(node);
+                    buffer.clear();
+                    precision.encode(vec, buffer);
+                    buffer.flip();
+                    precision.decode(buffer, decoded);
+                    double dot = 0, norm = 0, decodedNorm = 0;
+                    for (int i = 0; i < vec.length; i++) {
+                        dot += vec[i] * decoded[i];
+                        norm += vec[i] * vec[i];
+                        decodedNorm += decoded[i] * decoded[i];
+                    }
+                    double cosine = dot / Math.sqrt(norm * decodedNorm);
+                    cosineSum += cosine;
+                    minCosine = Math.min(minCosine, cosine);
+                }
+                double tolerance = precision == EmbeddingPrecision.INT8 ? 1e-3 : 1e-6;
+                assertTrue(1 - cosineSum / nodeIds.size() < tolerance, precision + " mean cosine " + cosineSum / nodeIds.size());
+                assertTrue(1 - minCosine < tolerance, precision + " min cosine " + minCosine);
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.regpattern2vec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class ExportFormatTest {
+
+    private static final List<String> NODE_IDS = List.of("4:ab:0", "4:ab:1", "4:ab:2");
+
+    private static EmbeddingMatrix matrix() {
+        EmbeddingMatrix matrix = new EmbeddingMatrix(NODE_IDS.size(), 4);
+        for (int node = 0; node < matrix.rows(); node++) {
+            for (int i = 0; i < matrix.dim(); i++) {
+                matrix.set(node, i, node - i * 0.25f);
+            }
+        }
+        return matrix;
+    }
+
+    @Test
+    void testNpy() throws IOException {
+        Path dir = Files.createTempDirectory("export");
+        String base = dir.resolve("embeddings").toString();
+        Path file = ExportFormat.NPY.write(base, NODE_IDS, matrix(), EmbeddingPrecision.FLOAT32);
+
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals((byte) 0x93, bytes.get(0));
+        assertEquals("NUMPY", new String(bytes.array(), 1, 5, StandardCharsets.US_ASCII));
+        int dataOffset = 10 + bytes.getShort(8);
+        assertEquals(0, dataOffset % 64);
+        String header = new String(bytes.array(), 10, dataOffset - 10, StandardCharsets.US_ASCII);
+        assertTrue(header.contains("'shape': (3, 4)"));
+        assertTrue(header.endsWith("\n"));
+        assertEquals(dataOffset + 3 * 4 * 4, bytes.capacity());
+        assertEquals(2 - 3 * 0.25f, bytes.getFloat(dataOffset + (2 * 4 + 3) * 4));
+
+        assertEquals(NODE_IDS, Files.readAllLines(Path.of(base + ".ids")));
+    }
+
+    @Test
+    void testWord2VecAndRaw() throws IOException {
+        Path dir = Files.createTempDirectory("export");
+        String base = dir.resolve("embeddings").toString();
+
+        ByteBuffer w2v = ByteBuffer.wrap(Files.readAllBytes(ExportFormat.WORD2VEC.write(base, NODE_IDS, matrix(), EmbeddingPrecision.FLOAT32)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        String header = "3 4\n";
+        int record = "4:ab:0 ".length() + 4 * 4 + 1;
+        assertEquals(header.length() + 3 * record, w2v.capacity());
+        assertEquals(header, new String(w2v.array(), 0, header.length(), StandardCharsets.US_ASCII));
+        int second = header.length() + record;
+        assertEquals("4:ab:1 ", new String(w2v.array(), second, 7, StandardCharsets.US_ASCII));
+        assertEquals(1 - 0.25f, w2v.getFloat(second + 7 + 4));
+        assertEquals('\n', w2v.get(second + record - 1));
+
+        ByteBuffer raw = ByteBuffer.wrap(Files.readAllBytes(ExportFormat.RAW.write(base, NODE_IDS, matrix(), EmbeddingPrecision.FLOAT32)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(3 * 4 * 4, raw.capacity());
+        assertEquals(1 - 0.5f, raw.getFloat((4 + 2) * 4));
+    }
+
+    @Test
+    void testTsv() throws IOException {
+        Path dir = Files.createTempDirectory("export");
+        Path file = ExportFormat.TSV.write(dir.resolve("embeddings").toString(), NODE_IDS, matrix(), EmbeddingPrecision.FLOAT32);
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertEquals("4:ab:1\t1.0 0.75 0.5 0.25", lines.get(1));
+    }
+
+    @Test
+    void testNone() throws IOException {
+        Path dir = Files.createTempDirectory("export");
+        assertEquals(ExportFormat.NONE, ExportFormat.parse("None"));
+        assertNull(ExportFormat.NONE.write(dir.resolve("embeddings").toString(), NODE_IDS, matrix(), EmbeddingPrecision.INT8));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testLowerPrecision() throws IOException {
+        Path dir = Files.createTempDirectory("export");
+        String base = dir.resolve("embeddings").toString();
+
+        Path half = ExportFormat.NPY.write(base, NODE_IDS, matrix(), EmbeddingPrecision.FLOAT16);
+        ByteBuffer npy = ByteBuffer.wrap(Files.readAllBytes(half)).order(ByteOrder.LITTLE_ENDIAN);
+        int dataOffset = 10 + npy.getShort(8);
+        assertTrue(new String(npy.array(), 10, dataOffset - 10, StandardCharsets.US_ASCII).contains("'descr': '<f2'"));
+        assertEquals(dataOffset + 3 * 4 * 2, npy.capacity());
+        assertEquals(2 - 3 * 0.25f, EmbeddingPrecision.fromHalf(npy.getShort(dataOffset + (2 * 4 + 3) * 2)));
+
+        // int8 rows are (scale, values) records, the scale of row 2 is 2 / 127
+        Path int8 = ExportFormat.RAW.write(base, NODE_IDS, matrix(), EmbeddingPrecision.INT8);
+        assertTrue(int8.toString().endsWith(".i8"));
+        ByteBuffer raw = ByteBuffer.wrap(Files.readAllBytes(int8)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(3 * (4 + 4), raw.capacity());
+        assertEquals(2 / 127f, raw.getFloat(2 * 8), 1e-7f);
+        assertEquals(127, raw.get(2 * 8 + 4));
+
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(ExportFormat.NPY.write(base, NODE_IDS, matrix(), EmbeddingPrecision.INT8)));
+        int recordOffset = 10 + records.order(ByteOrder.LITTLE_ENDIAN).getShort(8);
+        assertTrue(new String(records.array(), 10, recordOffset - 10, StandardCharsets.US_ASCII)
+                .contains("'descr': [('scale', '<f4'), ('values', '|i1', (4,))], 'fortran_order': False, 'shape': (3,)"));
+        assertEquals(recordOffset + 3 * (4 + 4), records.capacity());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> ExportFormat.TSV.write(base, NODE_IDS, matrix(), EmbeddingPrecision.FLOAT16));
+        assertThrows(IllegalArgumentException.class, () -> ExportFormat.WORD2VEC.checkPrecision(EmbeddingPrecision.INT8));
+    }
+}
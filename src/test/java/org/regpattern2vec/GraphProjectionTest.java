@@ -0,0 +1,40 @@
+package org.regpattern2vec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class GraphProjectionTest {
+
+    @Test
+    void testEdgesAreStoredBothWaysGroupedByType() {
+        String[] ids = {"a", "b", "c"};
+        int[] sources = {0, 0, 1};
+        int[] targets = {1, 2, 2};
+        short[] types = {1, 0, 1};
+        GraphProjection graph = GraphProjection.fromEdges(ids, sources, targets, types);
+
+        assertEquals(3, graph.nodeCount());
+        assertEquals("b", graph.elementId(1));
+
+        // Node a: type 0 to c first, then type 1 to b
+        int typeZero = graph.lowerBound(0, 0);
+        int typeOne = graph.lowerBound(0, 1);
+        assertEquals(1, typeOne - typeZero);
+        assertEquals(2, graph.target(typeZero));
+        assertEquals(1, graph.target(typeOne));
+        assertEquals(1, graph.lowerBound(0, 2) - typeOne);
+
+        // Node c has both edges as incoming, a by type 0 and b by type 1
+        assertEquals(0, graph.target(graph.lowerBound(2, 0)));
+        assertEquals(1, graph.target(graph.lowerBound(2, 1)));
+        assertEquals(2, graph.lowerBound(2, 2) - graph.lowerBound(2, 0));
+    }
+
+    @Test
+    void testEdgeArraysMustMatch() {
+        assertThrows(IllegalArgumentException.class,
+                () -> GraphProjection.fromEdges(new String[2], new int[] {0}, new int[] {1}, new short[0]));
+    }
+}
@@ -0,0 +1,126 @@
+package org.regpattern2vec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.logging.NullLog;
+
+public class HeterogenousSkipGramTest {
+
+    @Test
+    void testSameSeedTrainsSameModel() throws IOException {
+        Path path = Files.createTempFile("walks", ".bin");
+        try {
+            List<String> nodeIds = new ArrayList<>();
+            int[] nodeTypes = new int[50];
+            for (int n = 0; n < nodeTypes.length; n++) {
+                nodeIds.add("n" + n);
+                nodeTypes[n] = n % 2;
+            }
+            Random random = new Random(5);
+            try (WalkCorpus.Writer writer = new WalkCorpus.Writer(path, nodeIds)) {
+                for (int w = 0; w < 200; w++) {
+                    int[] walk = new int[10];
+                    for (int i = 0; i < walk.length; i++) {
+                        walk[i] = random.nextInt(nodeIds.size());
+                    }
+                    writer.add(walk);
+                }
+            }
+            WalkCorpus corpus = WalkCorpus.open(path);
+
+            HeterogenousSkipGram first = train(nodeIds, nodeTypes, corpus, 7L);
+            HeterogenousSkipGram second = train(nodeIds, nodeTypes, corpus, 7L);
+            HeterogenousSkipGram other = train(nodeIds, nodeTypes, corpus, 8L);
+            for (int n = 0; n < nodeIds.size(); n++) {
+                assertArrayEquals(first.getEmbedding(n), second.getEmbedding(n));
+            }
+            assertFalse(Arrays.equals(first.getEmbedding(0), other.getEmbedding(0)));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void testUpdateOfContextAndNegatives() throws IOException {
+        Path path = Files.createTempFile("walks", ".bin");
+        try {
+            List<String> nodeIds = List.of("t", "c", "n1", "n2");
+            try (WalkCorpus.Writer writer = new WalkCorpus.Writer(path, nodeIds)) {
+                writer.add(new int[] {0, 1, 2, 3});
+            }
+            HeterogenousSkipGram model = new HeterogenousSkipGram(null, NullLog.getInstance(), 8L, 1L, 2L, 0.5, 0.75, 0L, 0.0, 1L, 3L,
+                    nodeIds, new int[4], List.of(":A"), WalkCorpus.open(path));
+            HeterogenousSkipGram.UpdateBuffers buffers = new HeterogenousSkipGram.UpdateBuffers(8, 2);
+            buffers.negatives[0] = 2;
+            buffers.negatives[1] = 3;
+            float[] target = model.getEmbedding(0);
+
+            // Output vectors start at 0: sigma = 0.5, the outputs move by +-0.25 * target and the target stays
+            assertEquals(3 * Math.log(2), model.updateParameters(0, 1, 2, 0.5f, buffers), 0.01);
+            assertArrayEquals(target, model.getEmbedding(0));
+
+            // Now the target gets 0.25 * 0.25 * target from the context and from each negative, all from the old target
+            model.updateParameters(0, 1, 2, 0.5f, buffers);
+            float[] updated = model.getEmbedding(0);
+            for (int i = 0; i < target.length; i++) {
+                assertEquals(target[i] * 1.1875f, updated[i], Math.abs(target[i]) * 0.01f);
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void testLossDecreasesAndStopsEarly() throws IOException {
+        Path path = Files.createTempFile("walks", ".bin");
+        try {
+            // Two communities of 20 nodes, walks never leave their community
+            List<String> nodeIds = new ArrayList<>();
+            for (int n = 0; n < 40; n++) {
+                nodeIds.add("n" + n);
+            }
+            Random random = new Random(9);
+            try (WalkCorpus.Writer writer = new WalkCorpus.Writer(path, nodeIds)) {
+                for (int w = 0; w < 400; w++) {
+                    int community = 20 * (w % 2);
+                    int[] walk = new int[10];
+                    for (int i = 0; i < walk.length; i++) {
+                        walk[i] = community + random.nextInt(20);
+                    }
+                    writer.add(walk);
+                }
+            }
+            WalkCorpus corpus = WalkCorpus.open(path);
+
+            HeterogenousSkipGram full = new HeterogenousSkipGram(null, NullLog.getInstance(), 16L, 2L, 3L, 0.05, 0.75, 10L, 0.0, 1L, 5L,
+                    nodeIds, new int[40], List.of(":A"), corpus);
+            List<Double> losses = full.epochLosses();
+            assertEquals(10, losses.size());
+            assertTrue(losses.get(9) < losses.get(0));
+
+            // The second epoch cannot improve the loss by 99%, so training stops after it
+            HeterogenousSkipGram stopped = new HeterogenousSkipGram(null, NullLog.getInstance(), 16L, 2L, 3L, 0.05, 0.75, 10L, 0.99, 1L, 5L,
+                    nodeIds, new int[40], List.of(":A"), corpus);
+            assertEquals(2, stopped.epochLosses().size());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static HeterogenousSkipGram train(List<String> nodeIds, int[] nodeTypes, WalkCorpus corpus, long seed) throws IOException {
+        return new HeterogenousSkipGram(null, NullLog.getInstance(), 16L, 2L, 3L, 0.025, 0.75, 2L, 0.0, 1L, seed,
+                nodeIds, nodeTypes, List.of(":A", ":B"), corpus);
+    }
+}
@@ -0,0 +1,70 @@
+package org.regpattern2vec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.logging.NullLog;
+
+public class RegPattern2VecStreamTest {
+
+    @Test
+    void testSeededWalksDoNotDependOnThreads() throws Exception {
+        // 200 nodes in partitions of 8, more than the 2 * 4 partitions the walkers keep in flight
+        int nodeCount = 200;
+        String[] ids = new String[nodeCount];
+        List<String> nodeIds = new ArrayList<>();
+        for (int n = 0; n < nodeCount; n++) {
+            ids[n] = "4:ab-" + n + ":" + n;
+            nodeIds.add(ids[n]);
+        }
+        SplittableRandom random = new SplittableRandom(5);
+        int edgeCount = 4 * nodeCount;
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+        short[] types = new short[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            sources[e] = random.nextInt(nodeCount);
+            targets[e] = random.nextInt(nodeCount);
+            types[e] = (short) random.nextInt(2);
+        }
+        GraphProjection projection = GraphProjection.fromEdges(ids, sources, targets, types);
+        CompiledDfa dfa = new DfaCache(1).get("(R0)*(R1)(R0)*", List.of("R0", "R1"), Tracer.OFF);
+
+        RegPattern2VecStream procedure = new RegPattern2VecStream();
+        procedure.log = NullLog.getInstance();
+        Path directory = Files.createTempDirectory("walks");
+        try {
+            byte[] one = walks(procedure, nodeIds, projection, dfa, 1L, 7L, directory.resolve("one.bin"));
+            byte[] four = walks(procedure, nodeIds, projection, dfa, 4L, 7L, directory.resolve("four.bin"));
+            byte[] other = walks(procedure, nodeIds, projection, dfa, 4L, 8L, directory.resolve("other.bin"));
+
+            assertEquals(2 * nodeCount, WalkCorpus.open(directory.resolve("one.bin")).walkCount());
+            assertArrayEquals(one, four);
+            assertFalse(Arrays.equals(one, other));
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static byte[] walks(RegPattern2VecStream procedure, List<String> nodeIds, GraphProjection projection,
+                                CompiledDfa dfa, long concurrency, long seed, Path path) throws Exception {
+        try (WalkCorpus.Writer writer = new WalkCorpus.Writer(path, nodeIds)) {
+            procedure.generateWalks(nodeIds, projection, dfa, 6L, 2L, concurrency, 8, seed, writer, Tracer.OFF);
+        }
+        return Files.readAllBytes(path);
+    }
+}
@@ -1,21 +1,40 @@
 package org.regpattern2vec;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.*;
+import org.neo4j.configuration.GraphDatabaseSettings;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.GraphDatabase;
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Result;
 import org.neo4j.driver.Session;
+import org.neo4j.driver.exceptions.ClientException;
 import org.neo4j.harness.Neo4j;
 import org.neo4j.harness.Neo4jBuilders;
 
@@ -24,12 +43,15 @@ public class RegPattern2VecTest {
 
     private Neo4j embeddedDatabaseServer;
     private Driver driver;
+    private Path importDirectory;
 
     @BeforeAll
-    void initializeNeo4j() {
+    void initializeNeo4j() throws IOException {
         // Start an in-process Neo4j instance and register your procedure class (if needed)
+        // The runs write their files to the import directory, which the harness does not configure
         this.embeddedDatabaseServer = Neo4jBuilders.newInProcessBuilder()
                 .withDisabledServer()
+                .withConfig(GraphDatabaseSettings.load_csv_file_url_root, importDirectory = Files.createTempDirectory("import"))
                 .withProcedure(RegPattern2VecStream.class)
                 .build();
 
@@ -74,18 +96,8 @@ public class RegPattern2VecTest {
                 StandardOpenOption.CREATE,
                 StandardOpenOption.TRUNCATE_EXISTING
         )*/) {
-            String cypherScript = readCypherFromFile("src/test/resources/movie.cypher");
-            //String cypherScript = readCypherFromFile("src/test/resources/example.cypher");
-            // If your file contains multiple statements separated by semicolons, split them.
-            for (String statement : cypherScript.split(";")) {
-                String trimmed = statement.trim();
-                if (!trimmed.isEmpty()) {
-                    session.executeWrite(tx -> {
-                        tx.run(trimmed);
-                        return null;
-                    });
-                }
-            }
+            loadCypher(session, "src/test/resources/movie.cypher");
+            //loadCypher(session, "src/test/resources/example.cypher");
             // Call your procedure that performs random walks.
 
             // Adjust parameters ("regex", walkLength, walkCount) as required.
@@ -95,14 +107,14 @@ public class RegPattern2VecTest {
             //Result result = session.run("Call embeddings.regpattern2vec.stream(\"(R1)*(R2)\",5,5)");
             //Result result = session.run("Call embeddings.regpattern2vec(\"(^R2){2,}[R2]\")");
 
-            System.out.println(result.list());
-            System.out.println(result.stream());
-            System.out.println(result.stream().count());
-            System.out.println(result.stream().toList());
-            System.out.println(result.stream().toList().size());
+            List<Record> records = result.list();
 
-            // Verify that we got some results.
-            //assertFalse(result.list().isEmpty(), "Procedure should return at least one record.");
+            // Verify that we got one row per node.
+            assertFalse(records.isEmpty(), "Procedure should return at least one record.");
+            for (Record record : records) {
+                assertNotNull(record.get("nodeId").asString(), "Returned nodeId should not be null.");
+                assertEquals(128, record.get("embedding").asList().size());
+            }
 
             // Iterate over the result and print/check the returned node walk information.
 //            for (Record record : result.list()) {
@@ -142,6 +154,212 @@ public class RegPattern2VecTest {
         }
     }
 
+    @Test
+    void testWriteProcedure() {
+
+        try (Session session = driver.session()) {
+            loadCypher(session, "src/test/resources/movie.cypher");
+
+            long exports = embeddingFiles();
+            Record stats = session.run("Call embeddings.regpattern2vec.write(\"(ACTED_IN)*((DIRECTED)|(WROTE))[PRODUCED]+(REVIEWED)(FOLLOWS)*(^DIRECTED){1,}\", \"embedding\", 50)").single();
+            long nodeCount = session.run("MATCH (n) RETURN count(n) AS c").single().get("c").asLong();
+
+            assertEquals(nodeCount, stats.get("nodesWritten").asLong());
+            assertEquals((nodeCount + 49) / 50, stats.get("batches").asLong());
+            long written = session.run("MATCH (n) WHERE size(n.embedding) = 128 RETURN count(n) AS c").single().get("c").asLong();
+            assertEquals(nodeCount, written);
+
+            // The embeddings are only in the graph, the write procedure exports no file by default
+            assertEquals(exports, embeddingFiles());
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load the cypher file", e);
+        }
+    }
+
+    @Test
+    void testInvalidArgumentsFail() {
+
+        try (Session session = driver.session()) {
+            loadCypher(session, "src/test/resources/movie.cypher");
+
+            // The caller gets the error instead of an empty result
+            ClientException pattern = assertThrows(ClientException.class,
+                    () -> session.run("CALL embeddings.regpattern2vec.stream(\"(NOT_A_TYPE)*(ACTED_IN)\")").list());
+            assertTrue(pattern.getMessage().contains("Incorrect Relationship Type"), pattern.getMessage());
+
+            ClientException format = assertThrows(ClientException.class,
+                    () -> session.run("CALL embeddings.regpattern2vec.write(\"(ACTED_IN)*(DIRECTED)\", \"embedding\", 50, "
+                            + "5, 2, 2, 16, 5, 0.01, 1, 1, true, 'float32', 0.75, '', 'csv')").list());
+            assertTrue(format.getMessage().contains("csv"), format.getMessage());
+
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load the cypher file", e);
+        }
+    }
+
+    @Test
+    void testTransactionWalksFollowThePattern() throws IOException {
+
+        try (Session session = driver.session()) {
+            loadCypher(session, "src/test/resources/movie.cypher");
+
+            // Walks through the transaction API instead of the projection, the corpus is kept to check them
+            String pattern = "(ACTED_IN)*((DIRECTED)|(WROTE))[PRODUCED]+(REVIEWED)(FOLLOWS)*(^DIRECTED){1,}";
+            session.run("CALL embeddings.regpattern2vec.stream($pattern, 5, 2, 2, 16, 5, 0.01, 1, 2, false, 'float32', 0.75, "
+                    + "'transactional/walks.bin')", Map.of("pattern", pattern)).consume();
+
+            List<String> types = new ArrayList<>();
+            session.run("CALL db.relationshipTypes()").list().forEach(r -> types.add(r.get("relationshipType").asString()));
+            CompiledDfa dfa = new DfaCache(1).get(pattern, types, Tracer.OFF);
+            Map<String, Set<String>> edgeTypes = new HashMap<>();
+            for (Record edge : session.run("MATCH (u)-[r]-(v) RETURN elementId(u) AS u, elementId(v) AS v, type(r) AS type").list()) {
+                edgeTypes.computeIfAbsent(edge.get("u").asString() + "|" + edge.get("v").asString(), k -> new HashSet<>())
+                        .add(edge.get("type").asString());
+            }
+
+            // Every step follows a relationship between the two nodes whose type the DFA accepts after the steps before
+            WalkCorpus corpus = WalkCorpus.open(importDirectory.resolve("transactional/walks.bin"));
+            long nodeCount = session.run("MATCH (n) RETURN count(n) AS c").single().get("c").asLong();
+            assertEquals(2 * nodeCount, corpus.walkCount());
+            int steps = 0;
+            for (int w = 0; w < corpus.walkCount(); w++) {
+                int[] walk = corpus.walk(w);
+                Set<Integer> states = Set.of(dfa.startState());
+                for (int j = 1; j < walk.length; j++) {
+                    Set<String> stepTypes = edgeTypes.get(corpus.nodeIds().get(walk[j - 1]) + "|" + corpus.nodeIds().get(walk[j]));
+                    assertNotNull(stepTypes, "Walk " + w + " steps between nodes that are not adjacent");
+                    Set<Integer> next = new HashSet<>();
+                    for (int state : states) {
+                        for (String type : stepTypes) {
+                            int nextState = dfa.next(state, dfa.typeId(type));
+                            if (nextState != CompiledDfa.DEAD) {
+                                next.add(nextState);
+                            }
+                        }
+                    }
+                    assertFalse(next.isEmpty(), "Walk " + w + " leaves the pattern at step " + j);
+                    states = next;
+                    steps++;
+                }
+            }
+            assertTrue(steps > 0);
+        }
+    }
+
+    @Test
+    void testConcurrentCalls() throws Exception {
+
+        try (Session session = driver.session()) {
+            loadCypher(session, "src/test/resources/movie.cypher");
+        }
+        long nodeCount;
+        Set<String> allNodeIds = new HashSet<>();
+        try (Session session = driver.session()) {
+            nodeCount = session.run("MATCH (n) RETURN count(n) AS c").single().get("c").asLong();
+            session.run("MATCH (n) RETURN elementId(n) AS id").list().forEach(r -> allNodeIds.add(r.get("id").asString()));
+        }
+
+        // Different patterns at the same time, every call must see only its own nodes, walks and files
+        String[] patterns = {
+                "(ACTED_IN)*((DIRECTED)|(WROTE))[PRODUCED]+(REVIEWED)(FOLLOWS)*(^DIRECTED){1,}",
+                "(ACTED_IN)*(DIRECTED)",
+                "(REVIEWED)*(FOLLOWS)",
+                "(PRODUCED)*(ACTED_IN)"
+        };
+        int calls = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Record>>> results = new ArrayList<>();
+            for (int c = 0; c < calls; c++) {
+                String pattern = patterns[c % patterns.length];
+                results.add(pool.submit(() -> {
+                    try (Session session = driver.session()) {
+                        return session.run("CALL embeddings.regpattern2vec.stream($pattern, 5, 2, 2, 16)",
+                                Map.of("pattern", pattern)).list();
+                    }
+                }));
+            }
+            for (Future<List<Record>> result : results) {
+                List<Record> records = result.get();
+                assertEquals(nodeCount, records.size());
+                Set<String> nodeIds = new HashSet<>();
+                for (Record record : records) {
+                    nodeIds.add(record.get("nodeId").asString());
+                    assertEquals(16, record.get("embedding").asList().size());
+                }
+                assertEquals(allNodeIds, nodeIds);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSeededRunsAreReproducible() throws IOException {
+        // Walks over several partitions are checked by RegPattern2VecStreamTest
+        try (Session session = driver.session()) {
+            loadCypher(session, "src/test/resources/movie.cypher");
+
+            // Every run writes its walks to its own corpus, training is repeated on a corpus with one thread
+            String call = "CALL embeddings.regpattern2vec.stream(\"(ACTED_IN)*((DIRECTED)|(WROTE))[PRODUCED]+(REVIEWED)(FOLLOWS)*(^DIRECTED){1,}\", "
+                    + "5, 2, 2, 16, 5, 0.01, 1, $concurrency, true, 'float32', 0.75, $corpus, 'tsv', '', false, 'off', 0.01, $seed)";
+            Map<String, Object> first = embeddings(session.run(call, Map.of("concurrency", 1L, "corpus", "seeded/one.bin", "seed", 7L)).list());
+            Map<String, Object> second = embeddings(session.run(call, Map.of("concurrency", 1L, "corpus", "seeded/two.bin", "seed", 7L)).list());
+            session.run(call, Map.of("concurrency", 4L, "corpus", "seeded/four.bin", "seed", 7L)).consume();
+            Map<String, Object> other = embeddings(session.run(call, Map.of("concurrency", 1L, "corpus", "seeded/other.bin", "seed", 8L)).list());
+
+            // The walks of a seed do not depend on the number of threads
+            byte[] walks = Files.readAllBytes(importDirectory.resolve("seeded/one.bin"));
+            assertTrue(Files.size(importDirectory.resolve("seeded/one.bin")) > 0);
+            assertArrayEquals(walks, Files.readAllBytes(importDirectory.resolve("seeded/two.bin")));
+            assertArrayEquals(walks, Files.readAllBytes(importDirectory.resolve("seeded/four.bin")));
+            assertFalse(Arrays.equals(walks, Files.readAllBytes(importDirectory.resolve("seeded/other.bin"))));
+
+            // Training with one thread on the walks of 4 threads gives the same embeddings as on the walks of one
+            Map<String, Object> reused = embeddings(session.run(call, Map.of("concurrency", 1L, "corpus", "seeded/four.bin", "seed", 7L)).list());
+            assertFalse(first.isEmpty());
+            assertEquals(first, second);
+            assertEquals(first, reused);
+            assertNotEquals(first, other);
+        }
+    }
+
+    private long embeddingFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(importDirectory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("embeddings.")).count();
+        }
+    }
+
+    private static Map<String, Object> embeddings(List<Record> records) {
+        Map<String, Object> embeddings = new HashMap<>();
+        for (Record record : records) {
+            embeddings.put(record.get("nodeId").asString(), record.get("embedding").asList());
+        }
+        return embeddings;
+    }
+
+    /**
+     * Helper method to run every statement of a Cypher script file.
+     *
+     * @param session the session to run the statements in
+     * @param filePath the file path to the cypher script
+     * @throws IOException if the file cannot be read
+     */
+    private static void loadCypher(Session session, String filePath) throws IOException {
+        String cypherScript = readCypherFromFile(filePath);
+        // If your file contains multiple statements separated by semicolons, split them.
+        for (String statement : cypherScript.split(";")) {
+            String trimmed = statement.trim();
+            if (!trimmed.isEmpty()) {
+                session.executeWrite(tx -> {
+                    tx.run(trimmed);
+                    return null;
+                });
+            }
+        }
+    }
+
     /**
      * Helper method to read a Cypher script from a file.
      *
@@ -0,0 +1,88 @@
+package org.regpattern2vec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class RegexToDfaTest {
+
+    @Test
+    void testCompiledDfaFollowsPattern() {
+        RegexToDfa rd = new RegexToDfa(List.of("R1", "R2"), "(R1)*(R2)");
+        CompiledDfa dfa = rd.compiledDfa;
+        assertNotNull(dfa, "Compiled DFA should exist for a correct regex.");
+
+        int r1 = dfa.typeId("R1");
+        int r2 = dfa.typeId("R2");
+        int start = dfa.startState();
+
+        // (R1)* loops on the start state, R2 leads to the accepting state
+        assertEquals(start, dfa.next(start, r1));
+        int last = dfa.next(start, r2);
+        assertTrue(dfa.isAccepting(last));
+        assertFalse(dfa.isAccepting(start));
+
+        // Nothing may follow the final R2, unknown types are dead as well
+        assertEquals(CompiledDfa.DEAD, dfa.next(last, r1));
+        assertEquals(CompiledDfa.DEAD, dfa.next(last, r2));
+        assertEquals(CompiledDfa.DEAD, dfa.next(start, dfa.typeId("UNKNOWN")));
+
+        // Walkers only expand the accepted types of a state
+        assertEquals(2, dfa.acceptedTypes(start).length);
+        assertEquals(0, dfa.acceptedTypes(last).length);
+    }
+
+    @Test
+    void testCompiledDfaMatchesStateMoves() {
+        List<String> types = List.of("ACTED_IN", "DIRECTED", "PRODUCED", "WROTE", "REVIEWED", "FOLLOWS");
+        RegexToDfa rd = new RegexToDfa(types, "(ACTED_IN)*((DIRECTED)|(WROTE))[PRODUCED]+(REVIEWED)(FOLLOWS)*(^DIRECTED){1,}");
+        CompiledDfa dfa = rd.compiledDfa;
+
+        for (State state : rd.DStates) {
+            if (state.getName().isEmpty()) {
+                continue;
+            }
+            for (String type : types) {
+                State target = state.getNextStateBySymbol(type);
+                int expected = target == null || target.getName().isEmpty() ? CompiledDfa.DEAD : target.getTransformedName() - 1;
+                assertEquals(expected, dfa.next(state.getTransformedName() - 1, dfa.typeId(type)));
+            }
+        }
+    }
+
+    @Test
+    void testLargePatterns() {
+        List<String> types = new ArrayList<>();
+        StringBuilder chain = new StringBuilder();
+        StringBuilder alternation = new StringBuilder("(");
+        for (int i = 0; i < 300; i++) {
+            types.add("T" + i);
+            chain.append("(T").append(i).append(")");
+            alternation.append(i == 0 ? "" : "|").append("(T").append(i).append(")");
+        }
+        alternation.append(")*(T0)");
+
+        // One state per position of the chain, the walk of all types in order is accepted
+        CompiledDfa dfa = new RegexToDfa(types, chain.toString()).compiledDfa;
+        assertEquals(301, dfa.numStates());
+        int state = dfa.startState();
+        for (int i = 0; i < 300; i++) {
+            assertFalse(dfa.isAccepting(state));
+            state = dfa.next(state, dfa.typeId("T" + i));
+        }
+        assertTrue(dfa.isAccepting(state));
+
+        // Every type loops, T0 may also end the walk
+        dfa = new RegexToDfa(types, alternation.toString()).compiledDfa;
+        assertEquals(2, dfa.numStates());
+        int end = dfa.next(dfa.startState(), dfa.typeId("T0"));
+        assertTrue(dfa.isAccepting(end));
+        assertEquals(dfa.startState(), dfa.next(end, dfa.typeId("T299")));
+    }
+}
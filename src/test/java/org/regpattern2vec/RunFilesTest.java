@@ -0,0 +1,77 @@
+package org.regpattern2vec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+public class RunFilesTest {
+
+    @Test
+    void testRunsGetTheirOwnDirectory() throws IOException {
+        Path root = Files.createTempDirectory("import").toAbsolutePath().normalize();
+
+        RunFiles first = RunFiles.create(root, "");
+        RunFiles second = RunFiles.create(root, "");
+        assertNotEquals(first.runId(), second.runId());
+        assertNotEquals(first.directory(), second.directory());
+        assertEquals(root.resolve(RunFiles.DEFAULT_OUTPUT_DIRECTORY), first.directory().getParent());
+        assertTrue(Files.isDirectory(first.directory()));
+        assertEquals(first.directory(), first.walks().getParent());
+        assertEquals(first.directory(), first.nodeTypes().getParent());
+
+        RunFiles custom = RunFiles.create(root, "jobs/movies");
+        assertEquals(root.resolve("jobs/movies"), custom.directory().getParent());
+        assertEquals(root.resolve("shared/walks.bin"), custom.resolveUserPath("shared/walks.bin"));
+    }
+
+    @Test
+    void testPathsStayInTheImportDirectory() throws IOException {
+        Path root = Files.createTempDirectory("import");
+        assertThrows(IllegalArgumentException.class, () -> RunFiles.create(root, "../outside"));
+
+        RunFiles files = RunFiles.create(root, "");
+        assertThrows(IllegalArgumentException.class, () -> files.resolveUserPath("../../etc/walks.bin"));
+        assertThrows(IllegalArgumentException.class, () -> files.resolveUserPath("/tmp/walks.bin"));
+    }
+
+    @Test
+    void testOnlyOldCompletedRunsAreDeleted() throws IOException {
+        Path root = Files.createTempDirectory("import");
+        Path runs = root.resolve(RunFiles.DEFAULT_OUTPUT_DIRECTORY);
+        for (String runId : new String[] {"20250101-000000-0000000a", "20250102-000000-0000000b", "20250103-000000-0000000c"}) {
+            Files.createDirectories(runs.resolve(runId));
+            Files.writeString(runs.resolve(runId).resolve(RunFiles.WALK_FILE_NAME), "walks");
+            Files.writeString(runs.resolve(runId).resolve(RunFiles.COMPLETED_FILE_NAME), runId);
+        }
+        // Older than all of them but still in progress
+        Files.createDirectories(runs.resolve("20241231-000000-0000000f"));
+        Files.createDirectories(runs.resolve("shared"));
+
+        RunFiles files = RunFiles.create(root, "");
+        assertEquals(0, files.deleteOldRuns(0));
+        files.complete();
+        assertEquals(2, files.deleteOldRuns(2));
+        assertTrue(Files.isDirectory(files.directory()));
+        assertTrue(Files.isDirectory(runs.resolve("20250103-000000-0000000c")));
+        assertFalse(Files.exists(runs.resolve("20250102-000000-0000000b")));
+        assertFalse(Files.exists(runs.resolve("20250101-000000-0000000a")));
+        assertTrue(Files.isDirectory(runs.resolve("20241231-000000-0000000f")));
+        assertTrue(Files.isDirectory(runs.resolve("shared")));
+
+        // A second call finds nothing more to delete
+        assertEquals(0, RunFiles.create(root, "").deleteOldRuns(2));
+    }
+
+    @Test
+    void testImportDirectoryIsRequired() {
+        assertThrows(IllegalStateException.class, () -> RunFiles.importDirectory(null));
+    }
+}
@@ -0,0 +1,68 @@
+package org.regpattern2vec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+public class VectorKernelsTest {
+
+    @Test
+    void testSimdMatchesScalar() {
+        VectorKernels scalar = new ScalarKernels();
+        VectorKernels simd = new SimdKernels();
+        SplittableRandom random = new SplittableRandom(1);
+
+        // Lengths below, at and above a vector, with and without a tail
+        for (int length : new int[] {1, 7, 16, 64, 100, 257}) {
+            float[] a = new float[length];
+            float[] b = new float[length];
+            for (int i = 0; i < length; i++) {
+                a[i] = random.nextFloat() - 0.5f;
+                b[i] = random.nextFloat() - 0.5f;
+            }
+            assertEquals(scalar.dot(a, b, length), simd.dot(a, b, length), 1e-4f);
+
+            float[] y1 = b.clone();
+            float[] y2 = b.clone();
+            scalar.axpy(0.3f, a, y1, length);
+            simd.axpy(0.3f, a, y2, length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(y1[i], y2[i], 1e-6f);
+            }
+
+            // In place at an offset of a buffer, the floats around the vector stay untouched
+            ByteBuffer buffer1 = ByteBuffer.allocateDirect(4 * (length + 2)).order(ByteOrder.nativeOrder());
+            ByteBuffer buffer2 = ByteBuffer.allocateDirect(4 * (length + 2)).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < length; i++) {
+                buffer1.putFloat(4 * (i + 1), b[i]);
+                buffer2.putFloat(4 * (i + 1), b[i]);
+            }
+            scalar.axpyInto(0.3f, a, buffer1, 4, length);
+            simd.axpyInto(0.3f, a, buffer2, 4, length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(y1[i], buffer1.getFloat(4 * (i + 1)), 1e-6f);
+                assertEquals(y1[i], buffer2.getFloat(4 * (i + 1)), 1e-6f);
+            }
+            assertEquals(0f, buffer2.getFloat(0));
+            assertEquals(0f, buffer2.getFloat(4 * (length + 1)));
+        }
+    }
+
+    @Test
+    void testSigmoidTable() {
+        for (float x = -5.9f; x < 5.9f; x += 0.1f) {
+            assertEquals(1.0 / (1.0 + Math.exp(-x)), VectorKernels.sigmoid(x), 0.01);
+        }
+        assertEquals(0f, VectorKernels.sigmoid(-VectorKernels.MAX_EXP));
+        assertEquals(1f, VectorKernels.sigmoid(100f));
+        assertEquals(1f, VectorKernels.sigmoid(Math.nextDown(VectorKernels.MAX_EXP)), 0.01f);
+        for (float x = -5.9f; x < 5.9f; x += 0.1f) {
+            assertEquals(-Math.log1p(Math.exp(-x)), VectorKernels.logSigmoid(x), 0.02);
+        }
+        assertEquals(-20f, VectorKernels.logSigmoid(-20f));
+    }
+}
@@ -0,0 +1,99 @@
+package org.regpattern2vec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class WalkCorpusTest {
+
+    @Test
+    void testRoundTrip() throws IOException {
+        Path path = Files.createTempFile("walks", ".bin");
+        try {
+            List<String> nodeIds = new ArrayList<>();
+            for (int n = 0; n < 1000; n++) {
+                nodeIds.add("4:ab-" + n + ":" + n);
+            }
+            Random random = new Random(3);
+            List<int[]> walks = new ArrayList<>();
+            walks.add(new int[]{999, 0, 999, 1});
+            walks.add(new int[]{5});
+            for (int w = 0; w < 500; w++) {
+                int[] walk = new int[1 + random.nextInt(20)];
+                for (int i = 0; i < walk.length; i++) {
+                    walk[i] = random.nextInt(nodeIds.size());
+                }
+                walks.add(walk);
+            }
+
+            try (WalkCorpus.Writer writer = new WalkCorpus.Writer(path, nodeIds)) {
+                for (int[] walk : walks) {
+                    writer.add(walk);
+                }
+            }
+
+            WalkCorpus corpus = WalkCorpus.open(path);
+            assertEquals(nodeIds, corpus.nodeIds());
+            assertEquals(walks.size(), corpus.walkCount());
+            assertEquals(20, corpus.maxWalkLength());
+            int[] buffer = new int[corpus.maxWalkLength()];
+            for (int w = walks.size() - 1; w >= 0; w--) {
+                int length = corpus.walk(w, buffer);
+                assertEquals(walks.get(w).length, length);
+                assertArrayEquals(walks.get(w), corpus.walk(w));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void testNotACorpus() throws IOException {
+        Path path = Files.createTempFile("walks", ".txt");
+        try {
+            Files.writeString(path, "4:ab:0 4:ab:1\n");
+            assertThrows(IOException.class, () -> WalkCorpus.open(path));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void testAbortedCorpusIsNotWritten() throws IOException {
+        Path dir = Files.createTempDirectory("walks");
+        Path path = dir.resolve("walks.bin");
+        List<String> nodeIds = List.of("a", "b");
+        try (WalkCorpus.Writer writer = new WalkCorpus.Writer(path, nodeIds, 42)) {
+            writer.add(new int[] {0, 1});
+        }
+        assertEquals(42, WalkCorpus.open(path).parametersHash());
+
+        // A failed generation keeps the earlier corpus and leaves no temporary file
+        WalkCorpus.Writer writer = new WalkCorpus.Writer(path, nodeIds, 7);
+        writer.add(new int[] {1});
+        writer.abort();
+        writer.close();
+        WalkCorpus corpus = WalkCorpus.open(path);
+        assertEquals(42, corpus.parametersHash());
+        assertEquals(1, corpus.walkCount());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(path), files.toList());
+        }
+
+        Files.delete(path);
+        WalkCorpus.Writer failed = new WalkCorpus.Writer(path, nodeIds);
+        failed.abort();
+        assertFalse(Files.exists(path));
+    }
+}